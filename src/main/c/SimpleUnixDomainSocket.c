@@ -5,10 +5,15 @@
 #include <sys/types.h>
 #include <sys/un.h>
 #include <unistd.h>
+#include <fcntl.h>
+#include <poll.h>
 #include <stdio.h>
 #include <stdlib.h>
+#include <stddef.h>
+#include <string.h>
 #include <strings.h>
 #include <errno.h>
+#include <time.h>
 
 // Macro to print out an error
 #define ASSERTNOERR(cond, msg, jenv) do { \
@@ -18,7 +23,7 @@
 void throwException(JNIEnv *env, char* msg, char* detail){
     // DOOLEY PLEASE DON'T JUDGE ME
     size_t msg_len = strlen(msg) + strlen(detail) + 1;
-    char *message = (char *) malloc(msg_len);
+    char *message = (char *) calloc(msg_len, 1); // zeroed, so the strncats start from an empty string
     strncat(message, msg, strlen(msg));
     strncat(message, detail, strlen(detail));
 
@@ -29,29 +34,115 @@ void throwException(JNIEnv *env, char* msg, char* detail){
 }
 
 /*
-*  In our Java class, we can specify whether we want a unidirectional (SOCK_DGRAM) or bidirectional (SOCK_STREAM) socket
-*  Using the constant values 0 and 1 to represent this; SOCK_TYPE replaces them with the appropriate socket macro
+*  In our Java class, we can specify whether we want a unidirectional (SOCK_DGRAM) or bidirectional (SOCK_STREAM or
+*  SOCK_SEQPACKET) socket. Using the constant values 0, 1 and 2 to represent this; SOCK_TYPE replaces them with the
+*  appropriate socket macro
 */
-#define SOCK_TYPE(type) ((type)==0? SOCK_DGRAM : SOCK_STREAM)
+#define SOCK_TYPE(type) ((type)==0? SOCK_DGRAM : (type)==2? SOCK_SEQPACKET : SOCK_STREAM)
 
-// Just making sure the SUN_LEN macro has been defined. This just returns the actual length of an initialised sockaddr_un
-#ifndef SUN_LEN
-#define SUN_LEN(su) \
-            (sizeof(*(su)) - sizeof((su)->sun_path) + strlen((su)->sun_path))
-#endif
+// Stream and seqpacket sockets are connection oriented - they listen for, and accept, connections
+#define CONNECTION_ORIENTED(type) (SOCK_TYPE(type) != SOCK_DGRAM)
 
-// Initialises and checks the socket address
+/*
+*  A socket name starting with a NUL character is a Linux abstract namespace address - there's no socket file, so
+*  nothing to unlink, and the kernel forgets the name as soon as the socket is closed. Java hands us strings in
+*  modified UTF-8, which encodes NUL as the two bytes 0xC0 0x80.
+*/
+#define IS_ABSTRACT(name) ((unsigned char)(name)[0] == 0xC0 && (unsigned char)(name)[1] == 0x80)
+
+/*
+*  Initialises and checks the socket address, returning its length - or 0, with errno set, if the name doesn't fit.
+*  An abstract name isn't NUL terminated, the address length is all that marks where it ends, so it has to cover
+*  exactly the leading NUL plus the name.
+*/
 socklen_t sockaddr_init(const char* socketFile, struct sockaddr_un* sa){
-    socklen_t salen;
+    size_t len;
 
     bzero(sa, sizeof(struct sockaddr_un));
     sa->sun_family = AF_UNIX;
-    strcpy(sa->sun_path, socketFile);
 
-    salen = SUN_LEN(sa);
-    return salen;
+    if (IS_ABSTRACT(socketFile)){
+        len = strlen(socketFile + 2);
+        if (len + 1 > sizeof(sa->sun_path)){
+            errno = ENAMETOOLONG;
+            return 0;
+        }
+        // sun_path[0] is already the leading NUL
+        memcpy(sa->sun_path + 1, socketFile + 2, len);
+        return offsetof(struct sockaddr_un, sun_path) + 1 + len;
+    }
+
+    len = strlen(socketFile);
+    if (len + 1 > sizeof(sa->sun_path)){
+        errno = ENAMETOOLONG;
+        return 0;
+    }
+    // the terminating NUL is already there from bzero
+    memcpy(sa->sun_path, socketFile, len);
+    return offsetof(struct sockaddr_un, sun_path) + len + 1;
 }
 
+// Switches a socket between blocking and non-blocking mode
+int set_blocking(int s, int blocking){
+    int flags = fcntl(s, F_GETFL, 0);
+    if (flags == -1){
+        return -1;
+    }
+    flags = blocking ? (flags & ~O_NONBLOCK) : (flags | O_NONBLOCK);
+    return fcntl(s, F_SETFL, flags);
+}
+
+/*
+*  Waits up to timeout milliseconds (-1 to wait forever) for the socket to become ready for the poll events.
+*  Returns 1 if the socket is ready, NATIVE_TIMEOUT if the timeout expired, NATIVE_AGAIN if the wait was interrupted
+*  (the caller should recalculate the timeout and try again), or -1 on error.
+*/
+#define NATIVE_TIMEOUT com_andium_unix_socket_SimpleUnixDomainSocket_NATIVE_TIMEOUT
+#define NATIVE_AGAIN com_andium_unix_socket_SimpleUnixDomainSocket_NATIVE_AGAIN
+#define NATIVE_TRUNCATED com_andium_unix_socket_SimpleUnixDomainSocket_NATIVE_TRUNCATED
+#define WOULD_BLOCK(err) ((err) == EAGAIN || (err) == EWOULDBLOCK)
+
+int wait_ready(int s, short events, int timeout){
+    struct pollfd pfd;
+    int ret;
+
+    pfd.fd = s;
+    pfd.events = events;
+    pfd.revents = 0;
+
+    ret = poll(&pfd, 1, timeout);
+    if (ret == -1){
+        return errno == EINTR ? NATIVE_AGAIN : -1;
+    }
+    return ret == 0 ? NATIVE_TIMEOUT : 1;
+}
+
+// As wait_ready, but for a listening socket - fails with EINVAL if the socket is shut down or closed while we wait
+int wait_connection(int s, int timeout){
+    struct pollfd pfd;
+    int ret;
+
+    pfd.fd = s;
+    pfd.events = POLLIN;
+    pfd.revents = 0;
+
+    ret = poll(&pfd, 1, timeout);
+    if (ret == -1){
+        return errno == EINTR ? NATIVE_AGAIN : -1;
+    }
+    if (ret > 0 && (pfd.revents & (POLLHUP | POLLERR | POLLNVAL))){
+        errno = EINVAL;
+        return -1;
+    }
+    return ret == 0 ? NATIVE_TIMEOUT : 1;
+}
+
+// Flags for the timed send() - never block, and on Linux report a closed peer as EPIPE rather than raising SIGPIPE
+#ifdef MSG_NOSIGNAL
+#define SEND_FLAGS (MSG_DONTWAIT | MSG_NOSIGNAL)
+#else
+#define SEND_FLAGS MSG_DONTWAIT
+#endif
 
 // nativeCreate - only accepts a single connection. Use listen() if you want multiple connections
 JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeCreate(JNIEnv * jEnv, jclass jClass, jstring jSocketFile, jint jSocketType){
@@ -61,24 +152,27 @@ JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_native
 
     socklen_t salen = sockaddr_init(socketFile, &sa);
 
+    // call to unlink to ensure that nothing else is using the socket (abstract names have no file to unlink)
+    // TODO - change the java workflow so this isn't necessary. Maybe do the check in Java
+    if (salen != 0 && !IS_ABSTRACT(socketFile)){
+        unlink(socketFile);
+    }
+    (*jEnv)->ReleaseStringUTFChars(jEnv, jSocketFile, socketFile);
+    ASSERTNOERR(salen == 0, "nativeCreate: address", jEnv);
+
     // create the socket
     s = socket(PF_UNIX, SOCK_TYPE(jSocketType), 0);
     ASSERTNOERR(s == -1, "nativeCreate: socket", jEnv);
 
-    // call to unlink to ensure that nothing else is using the socket
-    // TODO - change the java workflow so this isn't necessary. Maybe do the check in Java
-    unlink(socketFile);
     // bind to the socket - this is where the actual socket file is created
     ASSERTNOERR(bind(s, (struct sockaddr *)&sa, salen) == -1, "nativeCreate: bind", jEnv);
     // if you're bidirectional, call accept() now
-    if (SOCK_TYPE(jSocketType) == SOCK_STREAM){
+    if (CONNECTION_ORIENTED(jSocketType)){
         ASSERTNOERR(listen(s,0) == -1, "nativeCreate: listen", jEnv);
         s = accept(s, (struct sockaddr*)&sa, &salen);
         ASSERTNOERR(s == -1, "nativeCreate: accept", jEnv);
     }
 
-    (*jEnv)->ReleaseStringUTFChars(jEnv, jSocketFile, socketFile);
-
     return s;
 }
 
@@ -90,30 +184,88 @@ JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_native
 
     socklen_t salen = sockaddr_init(socketFile, &sa);
 
+    if (salen != 0 && !IS_ABSTRACT(socketFile)){
+        unlink(socketFile);
+    }
+    (*jEnv)->ReleaseStringUTFChars(jEnv, jSocketFile, socketFile);
+    ASSERTNOERR(salen == 0, "nativeListen: address", jEnv);
+
     // create the socket
     s = socket(PF_UNIX, SOCK_TYPE(jSocketType), 0);
     ASSERTNOERR(s == -1, "nativeListen: socket", jEnv);
 
-    unlink(socketFile);
     // bind to the socket - this is where the actual socket file is created
     ASSERTNOERR(bind(s, (struct sockaddr *)&sa, salen) == -1, "nativeListen: bind", jEnv);
-    if (SOCK_TYPE(jSocketType) == SOCK_STREAM) {
+    if (CONNECTION_ORIENTED(jSocketType)) {
         ASSERTNOERR(listen(s, jBacklog) == -1, "nativeListen: listen", jEnv);
+        // the listening socket is non-blocking so accepts can wait in poll(); nativeAccept polls for up to the
+        // SO_RCVTIMEO timeout set with setSoTimeout, as a blocking accept() would
+        ASSERTNOERR(set_blocking(s, 0) == -1, "nativeListen: fcntl", jEnv);
     }
 
-    (*jEnv)->ReleaseStringUTFChars(jEnv, jSocketFile, socketFile);
-
     // return the listening socket file handle
     return s;
 }
 
+// Accepts a connection on a non-blocking listening socket. Returns -1 with errno set if the accept fails
+int accept_connection(int s){
+    int c = accept(s, NULL, NULL);
+#ifndef __linux__
+    // BSD derived systems pass O_NONBLOCK on from the listening socket, but the accepted socket should block
+    if (c != -1 && set_blocking(c, 1) == -1){
+        int err = errno;
+        close(c);
+        errno = err;
+        return -1;
+    }
+#endif
+    return c;
+}
+
+// Milliseconds on a monotonic clock, for deadlines which mustn't move with the wall clock
+long monotonic_millis(){
+    struct timespec ts;
+    clock_gettime(CLOCK_MONOTONIC, &ts);
+    return (long) ts.tv_sec * 1000 + ts.tv_nsec / 1000000;
+}
+
+// The SO_RCVTIMEO timeout (set by nativeTimeout) in milliseconds, or -1 if there isn't one. A blocking accept() on
+// Linux gives up after this timeout, so nativeAccept applies it to its poll() on the non-blocking listening socket
+int accept_timeout(int s){
+    struct timeval timeout;
+    socklen_t len = sizeof(timeout);
+    if (getsockopt(s, SOL_SOCKET, SO_RCVTIMEO, (char *)&timeout, &len) == -1 || (timeout.tv_sec == 0 && timeout.tv_usec == 0)){
+        return -1;
+    }
+    return timeout.tv_sec * 1000 + (timeout.tv_usec + 999) / 1000;
+}
+
 // nativeAccept
 JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeAccept(JNIEnv * jEnv, jclass jClass, jint jSocketFileHandle, jint jSocketType){
     int s = -1; // socket file handle
+    int timeout, remaining, ready;
+    long deadline;
 
     ASSERTNOERR(jSocketFileHandle == -1, "nativeAccept: socket", jEnv);
-    if (SOCK_TYPE(jSocketType) == SOCK_STREAM) {
-        s = accept(jSocketFileHandle, NULL, 0);
+    if (CONNECTION_ORIENTED(jSocketType)) {
+        timeout = accept_timeout(jSocketFileHandle);
+        deadline = timeout == -1 ? 0 : monotonic_millis() + timeout;
+
+        // the listening socket is non-blocking, so wait for a connection in poll()
+        while ((s = accept_connection(jSocketFileHandle)) == -1 && (WOULD_BLOCK(errno) || errno == EINTR)){
+            if (timeout == -1){
+                ready = wait_connection(jSocketFileHandle, -1);
+            } else {
+                remaining = (int) (deadline - monotonic_millis());
+                ready = remaining > 0 ? wait_connection(jSocketFileHandle, remaining) : NATIVE_TIMEOUT;
+            }
+            ASSERTNOERR(ready == -1, "nativeAccept: accept", jEnv);
+            if (ready == NATIVE_TIMEOUT){
+                // the socket timeout expired - fail as a blocking accept() would
+                errno = EAGAIN;
+                break;
+            }
+        }
         ASSERTNOERR(s == -1, "nativeAccept: accept", jEnv);
     }
 
@@ -121,6 +273,33 @@ JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_native
     return s;
 }
 
+// nativeTimedAccept
+JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeTimedAccept(JNIEnv * jEnv, jclass jClass, jint jSocketFileHandle, jint jSocketType, jint timeout){
+    int s = -1; // socket file handle
+    int ready;
+
+    ASSERTNOERR(jSocketFileHandle == -1, "nativeTimedAccept: socket", jEnv);
+    if (CONNECTION_ORIENTED(jSocketType)) {
+        s = accept_connection(jSocketFileHandle);
+        if (s == -1 && WOULD_BLOCK(errno)){
+            ready = wait_connection(jSocketFileHandle, timeout);
+            ASSERTNOERR(ready == -1, "nativeTimedAccept: accept", jEnv);
+            if (ready != 1){
+                return ready;
+            }
+            s = accept_connection(jSocketFileHandle);
+        }
+        if (s == -1 && (WOULD_BLOCK(errno) || errno == EINTR)){
+            // another thread took the connection
+            return NATIVE_AGAIN;
+        }
+        ASSERTNOERR(s == -1, "nativeTimedAccept: accept", jEnv);
+    }
+
+    // return the socket file handle
+    return s;
+}
+
 // nativeOpen
 JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeOpen(JNIEnv * jEnv, jclass jClass, jstring jSocketFile, jint jSocketType){
     int s; // socket file handle
@@ -128,6 +307,8 @@ JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_native
     const char *socketFile =
         (*jEnv)->GetStringUTFChars(jEnv, jSocketFile, NULL);
     socklen_t salen = sockaddr_init(socketFile, &sa);
+    (*jEnv)->ReleaseStringUTFChars(jEnv, jSocketFile, socketFile);
+    ASSERTNOERR(salen == 0, "nativeOpen: address", jEnv);
 
     s = socket(PF_UNIX, SOCK_TYPE(jSocketType), 0);
     ASSERTNOERR(s == -1, "nativeOpen: socket", jEnv);
@@ -139,7 +320,63 @@ JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_native
 	return -1;
     }
 
+    // return the socket file handle
+    return s;
+}
+
+/*
+*  Array I/O never pins or copies the whole Java array - only the [off, off+len) region is transferred, using
+*  Get/SetByteArrayRegion. Requests up to IO_STACK_BUF bytes are staged on the stack; anything larger uses a heap
+*  buffer for the duration of the call. Critical pinning isn't used, as read() and write() on a blocking socket can
+*  block indefinitely, and the GC must not be held off for that long.
+*/
+#define IO_STACK_BUF 8192
+
+// nativeTimedOpen
+JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeTimedOpen(JNIEnv * jEnv, jclass jClass, jstring jSocketFile, jint jSocketType, jint timeout){
+    int s; // socket file handle
+    int ret;
+    int err = 0;
+    socklen_t errlen = sizeof(err);
+    struct sockaddr_un sa;
+    const char *socketFile =
+        (*jEnv)->GetStringUTFChars(jEnv, jSocketFile, NULL);
+    socklen_t salen = sockaddr_init(socketFile, &sa);
     (*jEnv)->ReleaseStringUTFChars(jEnv, jSocketFile, socketFile);
+    ASSERTNOERR(salen == 0, "nativeTimedOpen: address", jEnv);
+
+    s = socket(PF_UNIX, SOCK_TYPE(jSocketType), 0);
+    ASSERTNOERR(s == -1, "nativeTimedOpen: socket", jEnv);
+    if (set_blocking(s, 0) == -1){
+        perror("nativeTimedOpen: fcntl");
+        close(s);
+        return -1;
+    }
+
+    ret = connect(s, (struct sockaddr *)&sa, salen);
+    if (ret == -1 && errno == EINPROGRESS){
+        ret = wait_ready(s, POLLOUT, timeout);
+        if (ret != 1){
+            close(s);
+            return ret;
+        }
+        // the connect has completed - find out whether it worked
+        ret = getsockopt(s, SOL_SOCKET, SO_ERROR, &err, &errlen);
+        if (ret == 0 && err != 0){
+            errno = err;
+            ret = -1;
+        }
+    } else if (ret == -1 && (WOULD_BLOCK(errno) || errno == EINTR)){
+        // the server's backlog is full. There's nothing to poll for, so the caller has to retry
+        close(s);
+        return NATIVE_AGAIN;
+    }
+
+    if (ret == -1 || set_blocking(s, 1) == -1) {
+        perror("nativeTimedOpen: connect");
+        close(s);
+        return -1;
+    }
 
     // return the socket file handle
     return s;
@@ -148,15 +385,27 @@ JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_native
 // nativeRead
 JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeRead(JNIEnv * jEnv, jclass jClass, jint jSocketFileHandle, jbyteArray jbarr, jint off, jint len){
     ssize_t count;
-    jbyte *cbarr = (*jEnv)->GetByteArrayElements(jEnv, jbarr, NULL);
-    ASSERTNOERR(cbarr == NULL, "nativeRead: GetByteArrayElements", jEnv);
+    jbyte stackbuf[IO_STACK_BUF];
+    jbyte *cbuf = stackbuf;
+
+    if (len > IO_STACK_BUF){
+        cbuf = (jbyte *) malloc(len);
+        ASSERTNOERR(cbuf == NULL, "nativeRead: malloc", jEnv);
+    }
 
     // read up to len bytes from the socket into the buffer
-    count = read(jSocketFileHandle, &cbarr[off], len);
+    count = read(jSocketFileHandle, cbuf, len);
+    if (count > 0){
+        // only copy back what was actually read
+        (*jEnv)->SetByteArrayRegion(jEnv, jbarr, off, count, cbuf);
+    }
+    if (cbuf != stackbuf){
+        int err = errno; // don't let free() clobber the error
+        free(cbuf);
+        errno = err;
+    }
     ASSERTNOERR(count == -1, "nativeRead: read", jEnv);
 
-    (*jEnv)->ReleaseByteArrayElements(jEnv, jbarr, cbarr, 0);
-
     // return the number of bytes read
     return count;
 }
@@ -164,19 +413,183 @@ JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_native
 // nativeWrite
 JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeWrite(JNIEnv * jEnv, jclass jClass, jint jSocketFileHandle, jbyteArray jbarr, jint off, jint len){
     ssize_t count;
-    jbyte *cbarr = (*jEnv)->GetByteArrayElements(jEnv, jbarr, NULL);
-    ASSERTNOERR(cbarr == NULL, "nativeWrite: GetByteArrayElements", jEnv);
+    jbyte stackbuf[IO_STACK_BUF];
+    jbyte *cbuf = stackbuf;
+
+    if (len > IO_STACK_BUF){
+        cbuf = (jbyte *) malloc(len);
+        ASSERTNOERR(cbuf == NULL, "nativeWrite: malloc", jEnv);
+    }
+
+    // only copy the region we're about to write
+    (*jEnv)->GetByteArrayRegion(jEnv, jbarr, off, len, cbuf);
 
     // try to write len bytes from the buffer to the socket
-    count = write(jSocketFileHandle, &cbarr[off], len);
+    count = write(jSocketFileHandle, cbuf, len);
+    if (cbuf != stackbuf){
+        int err = errno; // don't let free() clobber the error
+        free(cbuf);
+        errno = err;
+    }
     ASSERTNOERR(count == -1, "nativeWrite: write", jEnv);
 
-    (*jEnv)->ReleaseByteArrayElements(jEnv, jbarr, cbarr, JNI_ABORT);
+    // return the number of bytes written
+    return count;
+}
+
+/*
+*  The timed reads and writes try the operation first, and only poll() if the socket isn't ready - so a socket which
+*  already has data (or buffer space) costs a single syscall. They use MSG_DONTWAIT rather than making the socket
+*  non-blocking, so the plain blocking calls can still be used on the same socket.
+*/
+
+// recv() with MSG_DONTWAIT, which reports a message which didn't fit in len bytes through truncated - the kernel
+// discards the rest of a SOCK_SEQPACKET or SOCK_DGRAM message, so the caller must not treat it as a short read
+static ssize_t recv_dontwait(int fd, jbyte *buf, size_t len, int *truncated){
+    ssize_t count;
+    struct msghdr msg;
+    struct iovec iov;
+
+    iov.iov_base = buf;
+    iov.iov_len = len;
+    bzero(&msg, sizeof(msg));
+    msg.msg_iov = &iov;
+    msg.msg_iovlen = 1;
+
+    count = recvmsg(fd, &msg, MSG_DONTWAIT);
+    *truncated = count > 0 && (msg.msg_flags & MSG_TRUNC);
+    return count;
+}
+
+// nativeTimedRead
+JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeTimedRead(JNIEnv * jEnv, jclass jClass, jint jSocketFileHandle, jbyteArray jbarr, jint off, jint len, jint timeout){
+    ssize_t count;
+    int ready = 1;
+    int truncated = 0;
+    jbyte stackbuf[IO_STACK_BUF];
+    jbyte *cbuf = stackbuf;
+
+    if (len > IO_STACK_BUF){
+        cbuf = (jbyte *) malloc(len);
+        ASSERTNOERR(cbuf == NULL, "nativeTimedRead: malloc", jEnv);
+    }
+
+    count = recv_dontwait(jSocketFileHandle, cbuf, len, &truncated);
+    if (count == -1 && WOULD_BLOCK(errno)){
+        ready = wait_ready(jSocketFileHandle, POLLIN, timeout);
+        if (ready == 1){
+            count = recv_dontwait(jSocketFileHandle, cbuf, len, &truncated);
+            if (count == -1 && WOULD_BLOCK(errno)){
+                // another reader took the data
+                ready = NATIVE_AGAIN;
+            }
+        } else if (ready != -1){
+            count = 0;
+        }
+    }
+    if (count > 0){
+        // only copy back what was actually read
+        (*jEnv)->SetByteArrayRegion(jEnv, jbarr, off, count, cbuf);
+    }
+    if (cbuf != stackbuf){
+        int err = errno; // don't let free() clobber the error
+        free(cbuf);
+        errno = err;
+    }
+    ASSERTNOERR(ready == -1, "nativeTimedRead: poll", jEnv);
+    if (ready != 1){
+        return ready;
+    }
+    ASSERTNOERR(count == -1, "nativeTimedRead: recv", jEnv);
+    if (truncated){
+        return NATIVE_TRUNCATED;
+    }
+
+    // return the number of bytes read
+    return count;
+}
+
+// nativeTimedWrite
+JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeTimedWrite(JNIEnv * jEnv, jclass jClass, jint jSocketFileHandle, jbyteArray jbarr, jint off, jint len, jint timeout){
+    ssize_t count;
+    int ready = 1;
+    jbyte stackbuf[IO_STACK_BUF];
+    jbyte *cbuf = stackbuf;
+
+    if (len > IO_STACK_BUF){
+        cbuf = (jbyte *) malloc(len);
+        ASSERTNOERR(cbuf == NULL, "nativeTimedWrite: malloc", jEnv);
+    }
+
+    // only copy the region we're about to write
+    (*jEnv)->GetByteArrayRegion(jEnv, jbarr, off, len, cbuf);
+
+    count = send(jSocketFileHandle, cbuf, len, SEND_FLAGS);
+    if (count == -1 && WOULD_BLOCK(errno)){
+        ready = wait_ready(jSocketFileHandle, POLLOUT, timeout);
+        if (ready == 1){
+            count = send(jSocketFileHandle, cbuf, len, SEND_FLAGS);
+            if (count == -1 && WOULD_BLOCK(errno)){
+                // another writer took the buffer space
+                ready = NATIVE_AGAIN;
+            }
+        }
+    }
+    if (cbuf != stackbuf){
+        int err = errno; // don't let free() clobber the error
+        free(cbuf);
+        errno = err;
+    }
+    ASSERTNOERR(ready == -1, "nativeTimedWrite: poll", jEnv);
+    if (ready != 1){
+        return ready;
+    }
+    ASSERTNOERR(count == -1, "nativeTimedWrite: send", jEnv);
 
     // return the number of bytes written
     return count;
 }
 
+// nativeReceive - reads a single message, using recvmsg() so a message which doesn't fit in len bytes is reported as
+// NATIVE_TRUNCATED
+JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeReceive(JNIEnv * jEnv, jclass jClass, jint jSocketFileHandle, jbyteArray jbarr, jint off, jint len){
+    ssize_t count;
+    struct msghdr msg;
+    struct iovec iov;
+    jbyte stackbuf[IO_STACK_BUF];
+    jbyte *cbuf = stackbuf;
+
+    if (len > IO_STACK_BUF){
+        cbuf = (jbyte *) malloc(len);
+        ASSERTNOERR(cbuf == NULL, "nativeReceive: malloc", jEnv);
+    }
+
+    iov.iov_base = cbuf;
+    iov.iov_len = len;
+    bzero(&msg, sizeof(msg));
+    msg.msg_iov = &iov;
+    msg.msg_iovlen = 1;
+
+    count = recvmsg(jSocketFileHandle, &msg, 0);
+    if (count > 0){
+        // only copy back what was actually read
+        (*jEnv)->SetByteArrayRegion(jEnv, jbarr, off, count, cbuf);
+    }
+    if (cbuf != stackbuf){
+        int err = errno; // don't let free() clobber the error
+        free(cbuf);
+        errno = err;
+    }
+    ASSERTNOERR(count == -1, "nativeReceive: recvmsg", jEnv);
+    if (msg.msg_flags & MSG_TRUNC){
+        // the rest of the message has been discarded by the kernel
+        return NATIVE_TRUNCATED;
+    }
+
+    // return the length of the message
+    return count;
+}
+
 // nativeTimeout
 JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeTimeout(JNIEnv * jEnv, jclass jClass, jint jSocketFileHandle, jint milis){
     struct timeval timeout;
@@ -209,8 +622,8 @@ JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_native
     const char *socketFile =
         (*jEnv)->GetStringUTFChars(jEnv, jSocketFile, NULL);
 
-    // unlink socket file
-    ret = unlink(socketFile);
+    // unlink socket file - an abstract name has no file, so there's nothing to do
+    ret = IS_ABSTRACT(socketFile) ? 0 : unlink(socketFile);
 
     (*jEnv)->ReleaseStringUTFChars(jEnv, jSocketFile, socketFile);
 
@@ -11,6 +11,14 @@ extern "C" {
 #define com_andium_unix_socket_SimpleUnixDomainSocket_SOCK_DGRAM 0L
 #undef com_andium_unix_socket_SimpleUnixDomainSocket_SOCK_STREAM
 #define com_andium_unix_socket_SimpleUnixDomainSocket_SOCK_STREAM 1L
+#undef com_andium_unix_socket_SimpleUnixDomainSocket_SOCK_SEQPACKET
+#define com_andium_unix_socket_SimpleUnixDomainSocket_SOCK_SEQPACKET 2L
+#undef com_andium_unix_socket_SimpleUnixDomainSocket_NATIVE_TIMEOUT
+#define com_andium_unix_socket_SimpleUnixDomainSocket_NATIVE_TIMEOUT -2L
+#undef com_andium_unix_socket_SimpleUnixDomainSocket_NATIVE_AGAIN
+#define com_andium_unix_socket_SimpleUnixDomainSocket_NATIVE_AGAIN -3L
+#undef com_andium_unix_socket_SimpleUnixDomainSocket_NATIVE_TRUNCATED
+#define com_andium_unix_socket_SimpleUnixDomainSocket_NATIVE_TRUNCATED -4L
 /*
  * Class:     com_andium_unix_socket_SimpleUnixDomainSocket
  * Method:    nativeCreate
@@ -35,6 +43,14 @@ JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_native
 JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeAccept
   (JNIEnv *, jclass, jint, jint);
 
+/*
+ * Class:     com_andium_unix_socket_SimpleUnixDomainSocket
+ * Method:    nativeTimedAccept
+ * Signature: (III)I
+ */
+JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeTimedAccept
+  (JNIEnv *, jclass, jint, jint, jint);
+
 /*
  * Class:     com_andium_unix_socket_SimpleUnixDomainSocket
  * Method:    nativeOpen
@@ -43,6 +59,14 @@ JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_native
 JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeOpen
   (JNIEnv *, jclass, jstring, jint);
 
+/*
+ * Class:     com_andium_unix_socket_SimpleUnixDomainSocket
+ * Method:    nativeTimedOpen
+ * Signature: (Ljava/lang/String;II)I
+ */
+JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeTimedOpen
+  (JNIEnv *, jclass, jstring, jint, jint);
+
 /*
  * Class:     com_andium_unix_socket_SimpleUnixDomainSocket
  * Method:    nativeRead
@@ -59,6 +83,30 @@ JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_native
 JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeWrite
   (JNIEnv *, jclass, jint, jbyteArray, jint, jint);
 
+/*
+ * Class:     com_andium_unix_socket_SimpleUnixDomainSocket
+ * Method:    nativeTimedRead
+ * Signature: (I[BIII)I
+ */
+JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeTimedRead
+  (JNIEnv *, jclass, jint, jbyteArray, jint, jint, jint);
+
+/*
+ * Class:     com_andium_unix_socket_SimpleUnixDomainSocket
+ * Method:    nativeTimedWrite
+ * Signature: (I[BIII)I
+ */
+JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeTimedWrite
+  (JNIEnv *, jclass, jint, jbyteArray, jint, jint, jint);
+
+/*
+ * Class:     com_andium_unix_socket_SimpleUnixDomainSocket
+ * Method:    nativeReceive
+ * Signature: (I[BII)I
+ */
+JNIEXPORT jint JNICALL Java_com_andium_unix_socket_SimpleUnixDomainSocket_nativeReceive
+  (JNIEnv *, jclass, jint, jbyteArray, jint, jint);
+
 /*
  * update
  * Class:     com_andium_unix_socket_SimpleUnixDomainSocket
@@ -5,15 +5,25 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.net.URL;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Base class for running Unix Domain Sockets in Java. This class detects the platform / arch it is running on and
  * attempts to load the correct library from the /resources folder. In the event that the library is unable to be
  * loaded, an exception is thrown.
  *
- * This class can represent either kind of socket - Datagram or Stream. Datagram sockets are unidirectional, whereas
- * Stream sockets are bidirectional. Attempting to get an OutputStream on a Datagram SimpleUnixDomainSocketServer, or
- * an InputStream on a Datagram SimpleUnixDomainSocketClient will result in an exception.
+ * This class can represent any of the three kinds of socket - Datagram, Stream or Seqpacket. Datagram sockets are
+ * unidirectional, whereas Stream and Seqpacket sockets are bidirectional. Attempting to get an OutputStream on a
+ * Datagram SimpleUnixDomainSocketServer, or an InputStream on a Datagram SimpleUnixDomainSocketClient will result in
+ * an exception.
+ *
+ * Datagram and Seqpacket sockets preserve message boundaries - use send() and receive() to exchange whole messages.
+ * Reads from a Seqpacket InputStream also return one whole message at a time, so the buffer must be big enough for the
+ * message - if it isn't, an IOException is thrown rather than the rest of the message being silently lost.
+ *
+ * On Linux, a socket can be given an abstract name (see abstractName(String)) instead of a socket file. Abstract
+ * names have no file - nothing is created or unlinked on the file system, and the name disappears as soon as the
+ * server socket is closed.
  *
  * This socket implements Closable so you can use SimpleUnixDomainSocket within a try-with-resource - this is particularly
  * ideal for one-shot type of messages where we want to quickly connect to a socket, send our message and then disconnect.
@@ -30,6 +40,27 @@ public class SimpleUnixDomainSocket implements Closeable{
      * The constant SOCK_STREAM - this represents a Stream socket (Bidirectional).
      */
     public static final int SOCK_STREAM = 1;
+    /**
+     * The constant SOCK_SEQPACKET - this represents a Seqpacket socket (Bidirectional). Like a Stream socket it is
+     * connection oriented, reliable and ordered, but like a Datagram socket it preserves message boundaries.
+     * Seqpacket Unix domain sockets are supported on Linux, but not on macOS.
+     */
+    public static final int SOCK_SEQPACKET = 2;
+
+    /**
+     * Returned by the timed native calls when the timeout expired before the call completed.
+     */
+    protected static final int NATIVE_TIMEOUT = -2;
+    /**
+     * Returned by the timed native calls when the call should be retried with the remaining time - e.g. another
+     * thread consumed the data we were woken up for.
+     */
+    protected static final int NATIVE_AGAIN = -3;
+    /**
+     * Returned by nativeReceive and nativeTimedRead when the message didn't fit in the buffer, and the rest of it was
+     * discarded.
+     */
+    protected static final int NATIVE_TRUNCATED = -4;
 
     private static final String LIBNAME = "libsuds";
     private static final Logger staticLogger = LoggerFactory.getLogger(SimpleUnixDomainSocket.class);
@@ -151,6 +182,17 @@ public class SimpleUnixDomainSocket implements Closeable{
      */
     protected native static int nativeAccept(int nativeSocketFileHandle, int socketType);
 
+    /**
+     * Call to the native socket accept(), waiting in poll() for at most timeout milliseconds
+     * for a connection to arrive.
+     *
+     * @param nativeSocketFileHandle the native socket file handle
+     * @param socketType             the socket type
+     * @param timeout                the timeout in milliseconds
+     * @return the int, NATIVE_TIMEOUT or NATIVE_AGAIN
+     */
+    protected native static int nativeTimedAccept(int nativeSocketFileHandle, int socketType, int timeout);
+
     /**
      * Call to the native socket open(). This will create a new socket object and then
      * call connect() on the socket.
@@ -161,9 +203,21 @@ public class SimpleUnixDomainSocket implements Closeable{
      */
     protected native static int nativeOpen(String socketFile, int socketType);
 
+    /**
+     * Call to the native socket open(), connecting without blocking and waiting in poll() for at most
+     * timeout milliseconds for the connection to complete.
+     *
+     * @param socketFile the socket file
+     * @param socketType the socket type
+     * @param timeout    the timeout in milliseconds
+     * @return the int, NATIVE_TIMEOUT or NATIVE_AGAIN
+     */
+    protected native static int nativeTimedOpen(String socketFile, int socketType, int timeout);
+
     /**
      * Call to the native socket read(). It will read len bytes from the
-     * socket into the buffer and return the number of bytes read.
+     * socket into the buffer and return the number of bytes read. Only the bytes
+     * actually read are copied into b - the rest of the array is never touched.
      *
      * @param nativeSocketFileHandle the native socket file handle
      * @param b                      the b
@@ -177,6 +231,7 @@ public class SimpleUnixDomainSocket implements Closeable{
     /**
      * Call to the native socket write. It will try and write len bytes
      * from the buffer to the socket and return the number of bytes written.
+     * Only the [off, off + len) region of b is copied.
      *
      * @param nativeSocketFileHandle the native socket file handle
      * @param b                      the b
@@ -187,6 +242,47 @@ public class SimpleUnixDomainSocket implements Closeable{
     protected native static int nativeWrite(int nativeSocketFileHandle,
                                             byte[] b, int off, int len);
 
+    /**
+     * Call to the native socket recv(), waiting in poll() for at most timeout milliseconds
+     * for data to arrive.
+     *
+     * @param nativeSocketFileHandle the native socket file handle
+     * @param b                      the b
+     * @param off                    the off
+     * @param len                    the len
+     * @param timeout                the timeout in milliseconds
+     * @return the int, NATIVE_TIMEOUT, NATIVE_AGAIN or NATIVE_TRUNCATED
+     */
+    protected native static int nativeTimedRead(int nativeSocketFileHandle,
+                                                byte[] b, int off, int len, int timeout);
+
+    /**
+     * Call to the native socket send(), waiting in poll() for at most timeout milliseconds
+     * for buffer space. It may write fewer than len bytes.
+     *
+     * @param nativeSocketFileHandle the native socket file handle
+     * @param b                      the b
+     * @param off                    the off
+     * @param len                    the len
+     * @param timeout                the timeout in milliseconds
+     * @return the int, NATIVE_TIMEOUT or NATIVE_AGAIN
+     */
+    protected native static int nativeTimedWrite(int nativeSocketFileHandle,
+                                                 byte[] b, int off, int len, int timeout);
+
+    /**
+     * Call to the native socket recvmsg(). It will read a single message of up to len bytes
+     * into the buffer and return its length.
+     *
+     * @param nativeSocketFileHandle the native socket file handle
+     * @param b                      the b
+     * @param off                    the off
+     * @param len                    the len
+     * @return the length of the message, or NATIVE_TRUNCATED if the message was longer than len bytes
+     */
+    protected native static int nativeReceive(int nativeSocketFileHandle,
+                                              byte[] b, int off, int len);
+
     /**
      * Call to the native socket setsockopt(). This will set the time out of the provided
      * socket handle to that of the milis param.
@@ -242,7 +338,7 @@ public class SimpleUnixDomainSocket implements Closeable{
      */
     protected String socketFile;
     /**
-     * The Socket type (either SOCK_DGRAM or SOCK_STREAM).
+     * The Socket type (either SOCK_DGRAM, SOCK_STREAM or SOCK_SEQPACKET).
      */
     protected int socketType;
 
@@ -255,6 +351,19 @@ public class SimpleUnixDomainSocket implements Closeable{
      */
     protected SimpleUnixDomainSocketOutputStream outputStream;
 
+    /**
+     * The capture recording traffic on this socket, or null if the traffic isn't being captured.
+     */
+    private volatile SimpleUnixDomainSocketCapture.Connection capture;
+
+    /**
+     * The entry tracking this socket in SimpleUnixDomainSocketRegistry, or null if the socket was never opened.
+     */
+    protected SimpleUnixDomainSocketRegistry.Entry registryEntry;
+
+    // Written by reachabilityFence() after native calls
+    private volatile int fence;
+
     /**
      * Instantiates a new Simple unix domain socket. It is preferred not to use this constructor but rather
      * SimpleUnixDomainSocket(int,int);
@@ -274,13 +383,45 @@ public class SimpleUnixDomainSocket implements Closeable{
         this.nativeSocketFileHandle = pSocketFileHandle;
         this.socketType = pSocketType;
         socketFile = null;
+        register(SimpleUnixDomainSocketRegistry.State.CONNECTED);
 
         inputStream = new SimpleUnixDomainSocketInputStream();
-        if (socketType == SOCK_STREAM){
+        if (isConnectionOriented(socketType)){
             outputStream = new SimpleUnixDomainSocketOutputStream();
         }
     }
 
+    /**
+     * Checks whether the socket type is connection oriented (SOCK_STREAM or SOCK_SEQPACKET) - i.e. the server listens
+     * for and accepts connections, and the connections are bidirectional.
+     *
+     * @param socketType the socket type
+     * @return true for SOCK_STREAM and SOCK_SEQPACKET
+     */
+    protected static boolean isConnectionOriented(int socketType) {
+        return socketType != SOCK_DGRAM;
+    }
+
+    /**
+     * Registers the newly opened socket with SimpleUnixDomainSocketRegistry, so its file handle is reclaimed if the
+     * socket is dropped without being closed. Subclasses must call this once the native socket has been opened.
+     *
+     * @param state the state of the socket
+     */
+    protected void register(SimpleUnixDomainSocketRegistry.State state) {
+        registryEntry = SimpleUnixDomainSocketRegistry.register(this, nativeSocketFileHandle, socketType, state);
+    }
+
+    /**
+     * Keeps this socket strongly reachable up to the point it's called. Native calls only see nativeSocketFileHandle,
+     * so once the handle has been loaded the JIT may treat the socket as unreachable - and the registry would then
+     * close the file handle while the call is still using it. Java 7 has no Reference.reachabilityFence, so every
+     * native call on nativeSocketFileHandle must be followed by a call to this, which writes to a volatile field.
+     */
+    protected final void reachabilityFence() {
+        fence = 0;
+    }
+
     /**
      * Gets input stream.
      *
@@ -300,24 +441,231 @@ public class SimpleUnixDomainSocket implements Closeable{
     }
 
     /**
-     * Sets the socket timeout.
+     * Creates a Linux abstract namespace socket name, which can be used in place of a socket file name by both the
+     * server and the client. The name is prefixed with a NUL character, which is how the kernel tells the two apart.
+     *
+     * @param name the abstract name, without the leading NUL
+     * @return the socket name
+     */
+    public static String abstractName(String name) {
+        return '\0' + name;
+    }
+
+    /**
+     * Checks whether a socket name is an abstract namespace name, created with abstractName(String).
+     *
+     * @param socketFile the socket name
+     * @return true if the name is abstract
+     */
+    public static boolean isAbstract(String socketFile) {
+        return socketFile != null && !socketFile.isEmpty() && socketFile.charAt(0) == '\0';
+    }
+
+    /**
+     * Creates a deadline for the deadline aware calls - read(byte[],int,int,long), write(byte[],int,int,long),
+     * SimpleUnixDomainSocketServer#accept(long) and SimpleUnixDomainSocketClient(String,int,long). Deadlines are
+     * absolute, so a single deadline can be shared by a sequence of calls.
+     *
+     * @param timeout the time from now until the deadline
+     * @param unit    the unit of timeout
+     * @return the deadline, in System.nanoTime() terms
+     */
+    public static long deadline(long timeout, TimeUnit unit) {
+        return System.nanoTime() + unit.toNanos(timeout);
+    }
+
+    /**
+     * Gets the time left until the deadline, in whole milliseconds rounded up (so we never spin on a fraction of a
+     * millisecond), or 0 if the deadline has passed.
+     *
+     * @param deadline the deadline
+     * @return the remaining milliseconds
+     */
+    static int remainingMillis(long deadline) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, (remaining + 999999) / 1000000);
+    }
+
+    /**
+     * Reads up to len bytes from the socket, waiting no later than the deadline for data to arrive. Unlike
+     * setSoTimeout(int), this doesn't make a syscall to configure the socket, and if data is already waiting the
+     * read is a single syscall.
+     *
+     * @param b        the buffer to read into
+     * @param off      the offset in b
+     * @param len      the maximum number of bytes to read. On a SOCK_SEQPACKET or SOCK_DGRAM socket, if the message
+     *                 is longer than this, it is discarded and an IOException is thrown
+     * @param deadline the deadline, created with deadline(long, TimeUnit)
+     * @return the number of bytes read, or -1 if the socket has been closed
+     * @throws SimpleUnixDomainSocketTimeoutException if no data arrived before the deadline
+     * @throws IOException                            the io exception
+     */
+    public int read(byte[] b, int off, int len, long deadline) throws IOException {
+        if (b == null) {
+            throw new NullPointerException();
+        } else if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        } else if (len == 0) {
+            return 0;
+        }
+
+        int count;
+        while ((count = nativeTimedRead(nativeSocketFileHandle, b, off, len, remainingMillis(deadline))) == NATIVE_AGAIN) {
+            // woken up without any data - wait out the rest of the deadline
+        }
+        reachabilityFence();
+        if (count == NATIVE_TIMEOUT)
+            throw new SimpleUnixDomainSocketTimeoutException("Read timed out");
+        if (count == NATIVE_TRUNCATED)
+            throw new IOException("Message was longer than " + len + " bytes and has been truncated");
+        if (count == -1)
+            throw new IOException();
+        if (count > 0) {
+            record(SimpleUnixDomainSocketCapture.INBOUND, b, off, count);
+            return count;
+        }
+        return -1;
+    }
+
+    /**
+     * Writes len bytes to the socket, waiting no later than the deadline for buffer space. If the deadline expires
+     * part way through, some of the bytes may already have been written.
+     *
+     * @param b        the buffer to write from
+     * @param off      the offset in b
+     * @param len      the number of bytes to write
+     * @param deadline the deadline, created with deadline(long, TimeUnit)
+     * @throws SimpleUnixDomainSocketTimeoutException if the bytes couldn't all be written before the deadline
+     * @throws IOException                            the io exception
+     */
+    public void write(byte[] b, int off, int len, long deadline) throws IOException {
+        if (b == null) {
+            throw new NullPointerException();
+        } else if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        int written = 0;
+        while (written < len) {
+            int count = nativeTimedWrite(nativeSocketFileHandle, b, off + written, len - written, remainingMillis(deadline));
+            reachabilityFence();
+            if (count == NATIVE_TIMEOUT)
+                throw new SimpleUnixDomainSocketTimeoutException("Write timed out after " + written + " of " + len + " bytes");
+            if (count == -1)
+                throw new IOException("Unable to write to Unix domain socket");
+            if (count > 0) {
+                record(SimpleUnixDomainSocketCapture.OUTBOUND, b, off + written, count);
+                written += count;
+            }
+        }
+    }
+
+    /**
+     * Sends a single message. The message is delivered whole, or not at all.
+     *
+     * @param b   the buffer holding the message
+     * @param off the offset of the message in b
+     * @param len the length of the message
+     * @throws UnsupportedOperationException if this is a SOCK_STREAM socket, which doesn't preserve message boundaries
+     * @throws IOException                   the io exception
+     */
+    public void send(byte[] b, int off, int len) throws IOException {
+        checkMessageOriented();
+        if (b == null) {
+            throw new NullPointerException();
+        } else if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        int count = nativeWrite(nativeSocketFileHandle, b, off, len);
+        reachabilityFence();
+        if (count != len)
+            throw new IOException("Unable to send message on Unix domain socket");
+        record(SimpleUnixDomainSocketCapture.OUTBOUND, b, off, len);
+    }
+
+    /**
+     * Receives a single message, blocking until one arrives.
+     *
+     * @param b   the buffer to receive the message into
+     * @param off the offset in b
+     * @param len the space available in b - if the message is longer than this, it is discarded and an
+     *            IOException is thrown
+     * @return the length of the message, or -1 if the connection has been closed. On a SOCK_SEQPACKET socket an
+     *         empty message can't be told apart from the peer closing the connection - both read as -1, so don't
+     *         send empty messages on Seqpacket connections. Empty messages are also never recorded by a capture
+     * @throws UnsupportedOperationException if this is a SOCK_STREAM socket, which doesn't preserve message boundaries
+     * @throws IOException                   the io exception
+     */
+    public int receive(byte[] b, int off, int len) throws IOException {
+        checkMessageOriented();
+        if (b == null) {
+            throw new NullPointerException();
+        } else if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        int count = nativeReceive(nativeSocketFileHandle, b, off, len);
+        reachabilityFence();
+        if (count == NATIVE_TRUNCATED)
+            throw new IOException("Message was longer than " + len + " bytes and has been truncated");
+        if (count == -1)
+            throw new IOException("Unable to receive message on Unix domain socket");
+        if (count == 0 && isConnectionOriented(socketType))
+            return -1;
+        record(SimpleUnixDomainSocketCapture.INBOUND, b, off, count);
+        return count;
+    }
+
+    private void checkMessageOriented() {
+        if (socketType == SOCK_STREAM) {
+            throw new UnsupportedOperationException("Stream sockets don't preserve message boundaries. Use a SOCK_SEQPACKET or SOCK_DGRAM type, or the Input/OutputStreams.");
+        }
+    }
+
+    /**
+     * Sets the socket timeout. On a server, the timeout also bounds accept(). This makes a syscall each time it's
+     * called - if the timeout changes from call to call, use the deadline aware read(byte[],int,int,long) or
+     * SimpleUnixDomainSocketServer#accept(long) instead.
      *
      * @param timeout the timeout
      * @throws IOException the io exception
      */
     public void setSoTimeout(int timeout) throws IOException {
-        if (nativeTimeout(nativeSocketFileHandle, timeout) == -1){
+        int ret = nativeTimeout(nativeSocketFileHandle, timeout);
+        reachabilityFence();
+        if (ret == -1){
             throw new IOException("Unable to configure socket timeout");
         }
     }
 
     /**
-     * Closes the socket, it also checks to see whether the associated streams are closed too.
+     * Starts recording all traffic read from and written to this socket into the capture. Pass null to stop
+     * capturing. The capture isn't closed when the socket is closed, so a single capture can be shared between sockets -
+     * each socket is given its own connection id in the capture, so its messages can be replayed on their own (see
+     * SimpleUnixDomainSocketReplayer#replay(SimpleUnixDomainSocket, int, boolean, double)). Attaching the same capture
+     * again starts a new connection.
+     *
+     * @param capture the capture, or null
+     */
+    public void setCapture(SimpleUnixDomainSocketCapture capture) {
+        this.capture = capture == null ? null : capture.attach();
+    }
+
+    /**
+     * Closes the socket, it also checks to see whether the associated streams are closed too. Closing a socket
+     * which has already been closed has no effect.
      *
      * @throws IOException
      */
     @Override
     public void close() throws IOException {
+        if (registryEntry != null && !SimpleUnixDomainSocketRegistry.release(registryEntry)) {
+            return; // already closed - the file handle may since have been reused
+        }
         if (inputStream != null) {
             inputStream.close();
         }
@@ -329,27 +677,48 @@ public class SimpleUnixDomainSocket implements Closeable{
 
     /**
      * Unlinks the socket file. It is important to do this before your application ends as you may leave a lingering
-     * link on the socket file.
+     * link on the socket file. Abstract names have no socket file, so there's nothing to unlink.
      */
     public void unlink(){
-        if (socketFile != null){
+        if (socketFile != null && !isAbstract(socketFile)){
             nativeUnlink(socketFile);
         }
     }
 
+    // Records a message in the capture, if there is one
+    private void record(int direction, byte[] b, int off, int len) {
+        SimpleUnixDomainSocketCapture.Connection c = capture;
+        if (c != null) {
+            c.record(direction, b, off, len);
+        }
+    }
+
     /**
      * The type Simple unix domain socket input stream. It behaves as one would expect an inputstream would, except it pipes
      * calls through nativeRead(). It ensures that all requested bytes to be read have been read via nativeRead() - otherwise
      * it throws an IOException.
+     *
+     * On a Seqpacket socket each read returns a single whole message, via receive() - reading part of a message would
+     * discard the rest of it, so a message which doesn't fit in the buffer causes an IOException instead.
      */
     protected class SimpleUnixDomainSocketInputStream extends InputStream {
+        // scratch buffer for single byte reads, so read() doesn't allocate on every call
+        private final byte[] single = new byte[1];
+
         @Override
         public int read() throws IOException {
-            byte[] b = new byte[1];
-            int count = nativeRead(nativeSocketFileHandle, b, 0, 1);
+            if (socketType == SOCK_SEQPACKET) {
+                return receive(single, 0, 1) == -1 ? -1 : (int) single[0] & 0xff;
+            }
+            int count = nativeRead(nativeSocketFileHandle, single, 0, 1);
+            reachabilityFence();
             if (count == -1)
                 throw new IOException();
-            return count > 0 ? (int) b[0] & 0xff : -1;
+            if (count > 0) {
+                record(SimpleUnixDomainSocketCapture.INBOUND, single, 0, count);
+                return (int) single[0] & 0xff;
+            }
+            return -1;
         }
 
         @Override
@@ -361,16 +730,25 @@ public class SimpleUnixDomainSocket implements Closeable{
             } else if (len == 0) {
                 return 0;
             }
+            if (socketType == SOCK_SEQPACKET) {
+                return receive(b, off, len);
+            }
 
             int count = nativeRead(nativeSocketFileHandle, b, off, len);
+            reachabilityFence();
             if (count == -1)
                 throw new IOException();
-            return count > 0 ? count : -1;
+            if (count > 0) {
+                record(SimpleUnixDomainSocketCapture.INBOUND, b, off, count);
+                return count;
+            }
+            return -1;
         }
 
         // Closes the socket input stream
         public void close() throws IOException {
             nativeCloseInput(nativeSocketFileHandle);
+            reachabilityFence();
         }
     }
 
@@ -380,12 +758,17 @@ public class SimpleUnixDomainSocket implements Closeable{
      * throws an IOException.
      */
     protected class SimpleUnixDomainSocketOutputStream extends OutputStream {
+        // scratch buffer for single byte writes, so write(int) doesn't allocate on every call
+        private final byte[] single = new byte[1];
+
         @Override
         public void write(int b) throws IOException {
-            byte[] data = new byte[1];
-            data[0] = (byte) b;
-            if (nativeWrite(nativeSocketFileHandle, data, 0, 1) != 1)
+            single[0] = (byte) b;
+            int count = nativeWrite(nativeSocketFileHandle, single, 0, 1);
+            reachabilityFence();
+            if (count != 1)
                 throw new IOException("Unable to write to Unix domain socket");
+            record(SimpleUnixDomainSocketCapture.OUTBOUND, single, 0, 1);
         }
 
         @Override
@@ -398,13 +781,17 @@ public class SimpleUnixDomainSocket implements Closeable{
             } else if (len == 0) {
                 return;
             }
-            if (nativeWrite(nativeSocketFileHandle, b, off, len) != len)
+            int count = nativeWrite(nativeSocketFileHandle, b, off, len);
+            reachabilityFence();
+            if (count != len)
                 throw new IOException("Unable to write to Unix domain socket");
+            record(SimpleUnixDomainSocketCapture.OUTBOUND, b, off, len);
         }
 
         // Closes the socket output stream
         public void close() throws IOException {
             nativeCloseOutput(nativeSocketFileHandle);
+            reachabilityFence();
         }
     }
 }
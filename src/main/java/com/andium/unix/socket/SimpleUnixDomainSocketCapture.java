@@ -0,0 +1,233 @@
+package com.andium.unix.socket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records every message flowing through one or more SimpleUnixDomainSocket objects into a memory mapped, append only
+ * segment file. Attach a capture to a socket with SimpleUnixDomainSocket#setCapture, and replay it later with
+ * SimpleUnixDomainSocketReplayer. Each socket attached to the capture is given its own connection id, which is stored
+ * with every message, so the connections sharing a capture can be replayed separately.
+ *
+ * Recording a message is a bounds check and a copy into the mapped segment - nothing is allocated per message. The
+ * segment is flushed to disk by a background thread, so the socket threads never wait on the disk. The segment is a
+ * fixed size; once it is full, further messages are dropped (see getDroppedCount()).
+ *
+ * The segment file layout is:
+ *
+ * header:  int magic, int version, long capture start time (ms since epoch)
+ * records: int length, int connection id, byte direction, long nanoseconds since capture start, length bytes of payload
+ *
+ * A record length of 0 marks the end of the capture.
+ */
+public class SimpleUnixDomainSocketCapture implements Closeable {
+
+    /**
+     * The constant INBOUND - the message was read from the socket.
+     */
+    public static final int INBOUND = 1;
+    /**
+     * The constant OUTBOUND - the message was written to the socket.
+     */
+    public static final int OUTBOUND = 2;
+
+    static final int MAGIC = 0x53554453; // "SUDS"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_HEADER_SIZE = 17;
+
+    private static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(SimpleUnixDomainSocketCapture.class);
+
+    private final String captureFile;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer segment;
+    private final long startNanos;
+    private final ScheduledExecutorService flusher;
+
+    // guarded by this
+    private long recordCount;
+    private long droppedCount;
+    private int connectionCount;
+    private boolean closed;
+
+    /**
+     * Instantiates a new capture, flushing to disk every second.
+     *
+     * @param captureFile the name of the segment file to create. Any existing file is overwritten
+     * @param capacity    the size of the segment in bytes
+     * @throws IOException the io exception if the segment file can't be created or mapped
+     */
+    public SimpleUnixDomainSocketCapture(String captureFile, int capacity) throws IOException {
+        this(captureFile, capacity, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * Instantiates a new capture.
+     *
+     * @param captureFile   the name of the segment file to create. Any existing file is overwritten
+     * @param capacity      the size of the segment in bytes
+     * @param flushInterval how often, in milliseconds, the background thread flushes the segment to disk
+     * @throws IOException the io exception if the segment file can't be created or mapped
+     */
+    public SimpleUnixDomainSocketCapture(String captureFile, int capacity, long flushInterval) throws IOException {
+        if (capacity < HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Capture capacity is too small: " + capacity);
+        }
+        this.captureFile = captureFile;
+
+        file = new RandomAccessFile(captureFile, "rw");
+        try {
+            // truncate first so the whole segment is zero filled - a zero length marks the end of the capture
+            file.setLength(0);
+            file.setLength(capacity);
+            segment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+
+        startNanos = System.nanoTime();
+        segment.putInt(MAGIC);
+        segment.putInt(VERSION);
+        segment.putLong(System.currentTimeMillis());
+
+        flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "libsuds-capture-flush");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                segment.force();
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+
+        logger.debug("Capturing to {} ({} bytes)", captureFile, capacity);
+    }
+
+    /**
+     * A socket's attachment to a capture. Every message it records is tagged with its connection id.
+     */
+    static final class Connection {
+        final SimpleUnixDomainSocketCapture capture;
+        final int id;
+
+        Connection(SimpleUnixDomainSocketCapture capture, int id) {
+            this.capture = capture;
+            this.id = id;
+        }
+
+        void record(int direction, byte[] b, int off, int len) {
+            capture.record(id, direction, b, off, len);
+        }
+    }
+
+    /**
+     * Attaches a socket to the capture, giving it the next connection id. Ids start at 1.
+     *
+     * @return the connection to record the socket's messages through
+     */
+    synchronized Connection attach() {
+        return new Connection(this, ++connectionCount);
+    }
+
+    /**
+     * Appends a message to the segment. The length is written last, so a partially written record is never visible
+     * to a reader of the segment.
+     *
+     * @param connection the connection id of the socket the message flowed through
+     * @param direction  INBOUND or OUTBOUND
+     * @param b         the buffer holding the message
+     * @param off       the offset of the message in b
+     * @param len       the length of the message
+     */
+    synchronized void record(int connection, int direction, byte[] b, int off, int len) {
+        // a zero length record would mark the end of the capture, so empty messages aren't recorded
+        if (closed || len == 0) {
+            return;
+        }
+        if (segment.remaining() < RECORD_HEADER_SIZE + len) {
+            if (droppedCount++ == 0) {
+                logger.warn("Capture segment {} is full, dropping messages", captureFile);
+            }
+            return;
+        }
+
+        int position = segment.position();
+        segment.position(position + 4);
+        segment.putInt(connection);
+        segment.put((byte) direction);
+        segment.putLong(System.nanoTime() - startNanos);
+        segment.put(b, off, len);
+        segment.putInt(position, len);
+        recordCount++;
+    }
+
+    /**
+     * Gets the number of messages recorded.
+     *
+     * @return the record count
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Gets the number of sockets which have been attached to the capture.
+     *
+     * @return the connection count
+     */
+    public synchronized int getConnectionCount() {
+        return connectionCount;
+    }
+
+    /**
+     * Gets the number of messages which didn't fit in the segment.
+     *
+     * @return the dropped count
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Stops recording, flushes the segment to disk and closes the segment file. Any sockets still attached to
+     * this capture simply stop recording.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segment.force();
+        file.close();
+        logger.debug("Capture {} closed", captureFile);
+    }
+}
@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 
 /**
  * Creates a Unix domain socket and connects it to the server specified by the socket file. This class
@@ -16,8 +17,8 @@ public class SimpleUnixDomainSocketClient extends SimpleUnixDomainSocket {
     /**
      * Instantiates a new Simple unix domain socket client.
      *
-     * @param socketFile  the name of the socket file
-     * @param pSocketType the socket type (use SOCK_DGRAM or SOCK_STREAM)
+     * @param socketFile  the name of the socket file, or an abstract name (see abstractName(String))
+     * @param pSocketType the socket type (use SOCK_DGRAM, SOCK_STREAM or SOCK_SEQPACKET)
      * @throws IOException the io exception if it is unable to construct the socket
      */
     public SimpleUnixDomainSocketClient(String socketFile, int pSocketType) throws IOException {
@@ -29,8 +30,52 @@ public class SimpleUnixDomainSocketClient extends SimpleUnixDomainSocket {
             throw new IOException("Unable to open the socket");
         }
         logger.debug("Socket opened");
+        register(SimpleUnixDomainSocketRegistry.State.CONNECTED);
 
-        if (socketType == SOCK_STREAM){
+        if (isConnectionOriented(socketType)){
+            inputStream = new SimpleUnixDomainSocketInputStream();
+        }
+        outputStream = new SimpleUnixDomainSocketOutputStream();
+    }
+
+    /**
+     * Instantiates a new Simple unix domain socket client, waiting no later than the deadline for the connection to
+     * be made. If the server's backlog is full, the connection is retried until the deadline.
+     *
+     * @param socketFile  the name of the socket file, or an abstract name (see abstractName(String))
+     * @param pSocketType the socket type (use SOCK_DGRAM, SOCK_STREAM or SOCK_SEQPACKET)
+     * @param deadline    the deadline, created with SimpleUnixDomainSocket#deadline(long, TimeUnit)
+     * @throws SimpleUnixDomainSocketTimeoutException if the connection wasn't made before the deadline
+     * @throws IOException                            the io exception if it is unable to construct the socket
+     */
+    public SimpleUnixDomainSocketClient(String socketFile, int pSocketType, long deadline) throws IOException {
+        super.socketFile = socketFile;
+        super.socketType = pSocketType;
+
+        logger.debug("Calling nativeTimedOpen()");
+        while ((nativeSocketFileHandle = nativeTimedOpen(socketFile, socketType, remainingMillis(deadline))) == NATIVE_AGAIN){
+            if (remainingMillis(deadline) == 0){
+                nativeSocketFileHandle = NATIVE_TIMEOUT;
+                break;
+            }
+            // the server's backlog is full - there's nothing to wait on, so back off briefly and try again
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while connecting");
+            }
+        }
+        if (nativeSocketFileHandle == NATIVE_TIMEOUT){
+            throw new SimpleUnixDomainSocketTimeoutException("Connect timed out");
+        }
+        if (nativeSocketFileHandle == -1){
+            throw new IOException("Unable to open the socket");
+        }
+        logger.debug("Socket opened");
+        register(SimpleUnixDomainSocketRegistry.State.CONNECTED);
+
+        if (isConnectionOriented(socketType)){
             inputStream = new SimpleUnixDomainSocketInputStream();
         }
         outputStream = new SimpleUnixDomainSocketOutputStream();
@@ -46,7 +91,7 @@ public class SimpleUnixDomainSocketClient extends SimpleUnixDomainSocket {
      */
     @Override
     public SimpleUnixDomainSocketInputStream getInputStream() {
-        if (socketType == SOCK_STREAM){
+        if (isConnectionOriented(socketType)){
             return inputStream;
         } else {
             throw new UnsupportedOperationException("Datagram sockets are unidirectional. This socket type does not support InputStreams");
@@ -0,0 +1,182 @@
+package com.andium.unix.socket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads delimiter framed records (e.g. newline delimited JSON) from a socket, without decoding them into Strings.
+ * The reader fills a large buffer with as few reads from the socket as possible, scans it for delimiters 8 bytes at
+ * a time, and hands back each record as a slice of that buffer - no bytes are copied, and nothing is allocated per
+ * record.
+ *
+ * Records which span a refill are moved to the front of the buffer before it is refilled; if a single record is
+ * bigger than the buffer, the buffer grows (up to maxRecordLength). On a Seqpacket socket each message must fit in
+ * the free space left in the buffer - a message which doesn't causes an IOException.
+ *
+ * e.g.
+ *
+ * SimpleUnixDomainSocketDelimitedReader reader = new SimpleUnixDomainSocketDelimitedReader(socket, (byte) '\n');
+ * int length;
+ * while ((length = reader.next()) != -1){
+ *     handle(reader.array(), reader.offset(), length);
+ * }
+ */
+public class SimpleUnixDomainSocketDelimitedReader {
+
+    /**
+     * The default size of the read buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    /**
+     * The default maximum record length.
+     */
+    public static final int DEFAULT_MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+
+    private final InputStream in;
+    private final byte delimiter;
+    private final long pattern; // the delimiter repeated in every byte of a long
+    private final int maxRecordLength;
+
+    private byte[] buffer;
+    private ByteBuffer words; // little endian view of buffer, for reading it a long at a time
+
+    private int start;   // start of the unconsumed bytes in buffer
+    private int scanned; // everything before this has been checked for a delimiter
+    private int limit;   // end of the bytes read into buffer
+    private boolean eof;
+
+    private int recordOffset;
+
+    /**
+     * Instantiates a new delimited reader with the default buffer size and maximum record length.
+     *
+     * @param socket    the socket to read from
+     * @param delimiter the byte which terminates each record
+     */
+    public SimpleUnixDomainSocketDelimitedReader(SimpleUnixDomainSocket socket, byte delimiter) {
+        this(socket, delimiter, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_RECORD_LENGTH);
+    }
+
+    /**
+     * Instantiates a new delimited reader.
+     *
+     * @param socket          the socket to read from
+     * @param delimiter       the byte which terminates each record
+     * @param bufferSize      the initial size of the read buffer
+     * @param maxRecordLength the largest record (excluding the delimiter) the buffer may grow to hold
+     */
+    public SimpleUnixDomainSocketDelimitedReader(SimpleUnixDomainSocket socket, byte delimiter, int bufferSize, int maxRecordLength) {
+        if (bufferSize <= 0 || maxRecordLength <= 0) {
+            throw new IllegalArgumentException("Buffer size and maximum record length must be positive");
+        }
+        this.in = socket.getInputStream();
+        this.delimiter = delimiter;
+        this.pattern = (delimiter & 0xffL) * ONES;
+        this.maxRecordLength = maxRecordLength;
+
+        buffer = new byte[bufferSize];
+        words = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Reads the next record. The record is left in array() at offset(), without its delimiter, and is only valid
+     * until the next call to next(). The last record in the stream doesn't need to be terminated by a delimiter.
+     *
+     * @return the length of the record, or -1 at the end of the stream
+     * @throws IOException the io exception if the socket fails, or a record is longer than the maximum record length
+     */
+    public int next() throws IOException {
+        for (;;) {
+            int index = indexOf(scanned, limit);
+            if (index != -1) {
+                return take(index, index + 1);
+            }
+            scanned = limit;
+
+            if (eof) {
+                return start < limit ? take(limit, limit) : -1;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Gets the buffer holding the record returned by next().
+     *
+     * @return the buffer
+     */
+    public byte[] array() {
+        return buffer;
+    }
+
+    /**
+     * Gets the offset of the record returned by next() in array().
+     *
+     * @return the offset
+     */
+    public int offset() {
+        return recordOffset;
+    }
+
+    // Consumes the record running from start to end, resuming the scan at next
+    private int take(int end, int next) {
+        recordOffset = start;
+        start = next;
+        scanned = next;
+        return end - recordOffset;
+    }
+
+    // Moves the partial record to the front of the buffer (growing it if needed) and reads more from the socket
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, limit - start);
+            scanned -= start;
+            limit -= start;
+            start = 0;
+        }
+        if (limit == buffer.length) {
+            if (buffer.length > maxRecordLength) {
+                throw new IOException("Record is longer than the maximum record length of " + maxRecordLength);
+            }
+            byte[] grown = new byte[(int) Math.min((long) buffer.length * 2, (long) maxRecordLength + 1)];
+            System.arraycopy(buffer, 0, grown, 0, limit);
+            buffer = grown;
+            words = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        int count = in.read(buffer, limit, buffer.length - limit);
+        if (count == -1) {
+            eof = true;
+        } else {
+            limit += count;
+        }
+    }
+
+    /*
+     * Finds the first delimiter in buffer[from, to), or -1. Eight bytes are checked at a time (SWAR): XORing a word
+     * with the repeated delimiter turns matching bytes into zero bytes, and (x - 0x01..) & ~x & 0x80.. sets the high
+     * bit of every zero byte. Bits can also be set above a zero byte by the borrow, but never below the first one -
+     * so the lowest set bit always marks the first match.
+     */
+    private int indexOf(int from, int to) {
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            long x = words.getLong(i) ^ pattern;
+            long found = (x - ONES) & ~x & HIGHS;
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (buffer[i] == delimiter) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
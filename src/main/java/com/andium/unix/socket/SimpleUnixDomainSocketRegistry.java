@@ -0,0 +1,227 @@
+package com.andium.unix.socket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of every open libSUDS socket. If a socket becomes unreachable without being closed (e.g. a socket
+ * returned by SimpleUnixDomainSocketServer#accept() which was simply dropped), its file handle is reclaimed by a
+ * background thread, rather than leaking until the process runs out of file handles.
+ *
+ * Sockets are tracked with phantom references (the same mechanism as java.lang.ref.Cleaner, which isn't available on
+ * Java 7). Opening or closing a socket adds or removes a single entry in a concurrent set, so the registry doesn't
+ * serialise accept() and close() across threads. The counts are calculated on demand, by walking the open sockets.
+ *
+ * A socket must stay strongly reachable while a native call is using its file handle, or the handle could be closed
+ * (and then reused by another connection) under the call. Java 7 has no Reference.reachabilityFence, so the socket
+ * classes follow each native call with SimpleUnixDomainSocket#reachabilityFence(). Subclasses which make their own
+ * native calls on the file handle must do the same.
+ *
+ * Allocation site tracking records a stack trace whenever a socket is opened, so leaked sockets can be traced back to
+ * the code which opened them. It is off by default, as capturing the stack trace is relatively expensive - enable it
+ * with setAllocationTracking(true), or the system property libsuds.trackAllocations=true.
+ */
+public final class SimpleUnixDomainSocketRegistry {
+
+    /**
+     * The state of an open socket.
+     */
+    public enum State {
+        /**
+         * A server socket waiting for connections.
+         */
+        LISTENING,
+        /**
+         * A datagram server socket, bound to the socket file.
+         */
+        BOUND,
+        /**
+         * A client, or a connection accepted by a server.
+         */
+        CONNECTED
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(SimpleUnixDomainSocketRegistry.class);
+
+    private static final ReferenceQueue<SimpleUnixDomainSocket> unreachable = new ReferenceQueue<>();
+    private static final Set<Entry> open = Collections.newSetFromMap(new ConcurrentHashMap<Entry, Boolean>());
+    private static final AtomicLong reclaimed = new AtomicLong();
+
+    private static volatile boolean trackAllocations = Boolean.getBoolean("libsuds.trackAllocations");
+
+    static {
+        Thread reaper = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (;;) {
+                    try {
+                        reclaim((Entry) unreachable.remove());
+                    } catch (InterruptedException e) {
+                        // keep reclaiming - the reaper lives as long as the process
+                    } catch (Throwable t) {
+                        logger.error("Unable to reclaim socket", t);
+                    }
+                }
+            }
+        }, "libsuds-socket-reaper");
+        reaper.setDaemon(true);
+        reaper.start();
+    }
+
+    private SimpleUnixDomainSocketRegistry() {
+        // static methods only
+    }
+
+    /**
+     * An open socket. The entry is strongly held by the open set, and is enqueued once its socket is unreachable.
+     */
+    static final class Entry extends PhantomReference<SimpleUnixDomainSocket> {
+        final int fileHandle;
+        final int socketType;
+        final State state;
+        final Throwable allocationSite;
+
+        Entry(SimpleUnixDomainSocket socket, int fileHandle, int socketType, State state, Throwable allocationSite) {
+            super(socket, unreachable);
+            this.fileHandle = fileHandle;
+            this.socketType = socketType;
+            this.state = state;
+            this.allocationSite = allocationSite;
+        }
+
+        @Override
+        public String toString() {
+            return "fd " + fileHandle + " (type " + socketType + ", " + state + ")";
+        }
+    }
+
+    /**
+     * Starts tracking a newly opened socket.
+     *
+     * @param socket     the socket
+     * @param fileHandle the native socket file handle
+     * @param socketType the socket type
+     * @param state      the state of the socket
+     * @return the entry to release when the socket is closed
+     */
+    static Entry register(SimpleUnixDomainSocket socket, int fileHandle, int socketType, State state) {
+        Entry entry = new Entry(socket, fileHandle, socketType, state,
+                trackAllocations ? new Throwable("Socket opened here") : null);
+        open.add(entry);
+        return entry;
+    }
+
+    /**
+     * Stops tracking a socket which is being closed. Only the first call for an entry succeeds, whether it comes from
+     * close() or from the reaper - the caller which gets true is the one which must close the file handle.
+     *
+     * @param entry the entry returned by register
+     * @return true if the file handle should be closed, false if it has already been closed
+     */
+    static boolean release(Entry entry) {
+        return open.remove(entry);
+    }
+
+    private static void reclaim(Entry entry) {
+        if (!release(entry)) {
+            return; // closed normally
+        }
+        SimpleUnixDomainSocket.nativeClose(entry.fileHandle);
+        reclaimed.incrementAndGet();
+
+        if (entry.allocationSite != null) {
+            logger.warn("Socket {} was never closed - reclaimed", entry, entry.allocationSite);
+        } else {
+            logger.warn("Socket {} was never closed - reclaimed. Enable allocation tracking to find where it was opened", entry);
+        }
+    }
+
+    /**
+     * Gets the number of open sockets.
+     *
+     * @return the open count
+     */
+    public static int getOpenCount() {
+        return open.size();
+    }
+
+    /**
+     * Gets the number of open sockets of a type.
+     *
+     * @param socketType the socket type (SOCK_DGRAM, SOCK_STREAM or SOCK_SEQPACKET)
+     * @return the open count
+     */
+    public static int getOpenCount(int socketType) {
+        int count = 0;
+        for (Entry entry : open) {
+            if (entry.socketType == socketType) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of open sockets in a state.
+     *
+     * @param state the state
+     * @return the open count
+     */
+    public static int getOpenCount(State state) {
+        int count = 0;
+        for (Entry entry : open) {
+            if (entry.state == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of sockets which became unreachable without being closed, and had their file handles reclaimed.
+     *
+     * @return the reclaimed count
+     */
+    public static long getReclaimedCount() {
+        return reclaimed.get();
+    }
+
+    /**
+     * Logs every open socket, along with where it was opened if allocation tracking was enabled at the time.
+     */
+    public static void logOpenSockets() {
+        logger.info("{} open sockets", open.size());
+        for (Entry entry : open) {
+            if (entry.allocationSite != null) {
+                logger.info("Open socket {}", entry, entry.allocationSite);
+            } else {
+                logger.info("Open socket {}", entry);
+            }
+        }
+    }
+
+    /**
+     * Enables or disables allocation site tracking for sockets opened from now on.
+     *
+     * @param enabled true to record where each socket is opened
+     */
+    public static void setAllocationTracking(boolean enabled) {
+        trackAllocations = enabled;
+    }
+
+    /**
+     * Checks whether allocation site tracking is enabled.
+     *
+     * @return true if allocation sites are being recorded
+     */
+    public static boolean isAllocationTracking() {
+        return trackAllocations;
+    }
+}
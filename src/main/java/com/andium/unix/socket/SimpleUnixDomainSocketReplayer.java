@@ -0,0 +1,205 @@
+package com.andium.unix.socket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a capture recorded by SimpleUnixDomainSocketCapture against a connected socket - either a client, or a
+ * socket returned by SimpleUnixDomainSocketServer#accept().
+ *
+ * Messages the captured socket wrote are written to the socket, at their original offset from the start of the
+ * capture (divided by the speed). Messages the captured socket read are read back from the socket and discarded, so
+ * the replay keeps pace with whatever is on the other end. Replaying with mirror set swaps the two directions, so a
+ * capture taken on a client can drive a server-side socket, and vice versa.
+ *
+ * A capture shared between several sockets holds one connection per socket. Each connection is replayed on its own,
+ * with replay(SimpleUnixDomainSocket, int, boolean, double) - getConnections() lists them.
+ *
+ * e.g. replaying a client capture at twice the original speed
+ *
+ * SimpleUnixDomainSocketReplayer replayer = new SimpleUnixDomainSocketReplayer("client.capture");
+ * try (SimpleUnixDomainSocketClient client = new SimpleUnixDomainSocketClient("socket.sock", SOCK_STREAM)){
+ *     replayer.replay(client, false, 2.0);
+ * }
+ */
+public class SimpleUnixDomainSocketReplayer {
+
+    private final Logger logger = LoggerFactory.getLogger(SimpleUnixDomainSocketReplayer.class);
+
+    private final String captureFile;
+    private final ByteBuffer segment;
+    private final long captureStart;
+    private final int[] connections;
+
+    /**
+     * Instantiates a new replayer, mapping the capture file read only.
+     *
+     * @param captureFile the segment file written by SimpleUnixDomainSocketCapture
+     * @throws IOException the io exception if the file can't be mapped, or isn't a capture
+     */
+    public SimpleUnixDomainSocketReplayer(String captureFile) throws IOException {
+        this.captureFile = captureFile;
+        try (RandomAccessFile file = new RandomAccessFile(captureFile, "r")) {
+            segment = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        }
+
+        if (segment.remaining() < SimpleUnixDomainSocketCapture.HEADER_SIZE
+                || segment.getInt(0) != SimpleUnixDomainSocketCapture.MAGIC) {
+            throw new IOException(captureFile + " is not a libsuds capture");
+        }
+        if (segment.getInt(4) != SimpleUnixDomainSocketCapture.VERSION) {
+            throw new IOException("Unsupported capture version " + segment.getInt(4));
+        }
+        captureStart = segment.getLong(8);
+        connections = findConnections();
+    }
+
+    // Lists the connection ids which have records, in the order of their first record
+    private int[] findConnections() {
+        Set<Integer> found = new LinkedHashSet<>();
+        ByteBuffer records = segment.duplicate();
+        records.position(SimpleUnixDomainSocketCapture.HEADER_SIZE);
+        while (records.remaining() >= SimpleUnixDomainSocketCapture.RECORD_HEADER_SIZE) {
+            int length = records.getInt();
+            if (length == 0) {
+                break; // end of the capture
+            }
+            found.add(records.getInt());
+            records.position(records.position() + SimpleUnixDomainSocketCapture.RECORD_HEADER_SIZE - 8 + length);
+        }
+
+        int[] ids = new int[found.size()];
+        int i = 0;
+        for (int id : found) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * Gets the time the capture was started.
+     *
+     * @return the capture start time, in milliseconds since the epoch
+     */
+    public long getCaptureStart() {
+        return captureStart;
+    }
+
+    /**
+     * Gets the ids of the connections in the capture, in the order they first sent or received a message.
+     *
+     * @return the connection ids
+     */
+    public int[] getConnections() {
+        return connections.clone();
+    }
+
+    /**
+     * Replays a capture of a single socket against the socket. This blocks until every message has been written or
+     * read.
+     *
+     * @param socket the connected socket to drive
+     * @param mirror false to replay from the point of view of the captured socket, true to swap the directions
+     * @param speed  1.0 for the original speed, greater than 1.0 to accelerate, or 0 to replay as fast as possible
+     * @return the number of messages replayed
+     * @throws IllegalStateException if the capture holds more than one connection - replay them one at a time
+     * @throws IOException           the io exception if the socket fails, or closes before the replay is complete
+     * @throws InterruptedException  if the thread is interrupted while waiting to send a message
+     */
+    public long replay(SimpleUnixDomainSocket socket, boolean mirror, double speed) throws IOException, InterruptedException {
+        if (connections.length > 1) {
+            throw new IllegalStateException(captureFile + " holds " + connections.length
+                    + " connections. Replay them one at a time with replay(socket, connection, mirror, speed)");
+        }
+        return connections.length == 0 ? 0 : replay(socket, connections[0], mirror, speed);
+    }
+
+    /**
+     * Replays one connection from the capture against the socket. This blocks until every message the connection
+     * wrote or read has been written or read. Message timings are still relative to the start of the capture.
+     *
+     * @param socket     the connected socket to drive
+     * @param connection the id of the connection to replay, from getConnections()
+     * @param mirror     false to replay from the point of view of the captured socket, true to swap the directions
+     * @param speed      1.0 for the original speed, greater than 1.0 to accelerate, or 0 to replay as fast as possible
+     * @return the number of messages replayed
+     * @throws IOException          the io exception if the socket fails, or closes before the replay is complete
+     * @throws InterruptedException if the thread is interrupted while waiting to send a message
+     */
+    public long replay(SimpleUnixDomainSocket socket, int connection, boolean mirror, double speed) throws IOException, InterruptedException {
+        if (speed < 0) {
+            throw new IllegalArgumentException("Replay speed can't be negative: " + speed);
+        }
+
+        ByteBuffer records = segment.duplicate();
+        records.position(SimpleUnixDomainSocketCapture.HEADER_SIZE);
+
+        byte[] scratch = new byte[4096];
+        long replayStart = System.nanoTime();
+        long count = 0;
+
+        while (records.remaining() >= SimpleUnixDomainSocketCapture.RECORD_HEADER_SIZE) {
+            int length = records.getInt();
+            if (length == 0) {
+                break; // end of the capture
+            }
+            int id = records.getInt();
+            int direction = records.get();
+            long offset = records.getLong();
+
+            if (id != connection) {
+                records.position(records.position() + length);
+                continue;
+            }
+
+            if (mirror) {
+                direction = direction == SimpleUnixDomainSocketCapture.INBOUND ?
+                        SimpleUnixDomainSocketCapture.OUTBOUND : SimpleUnixDomainSocketCapture.INBOUND;
+            }
+
+            if (direction == SimpleUnixDomainSocketCapture.OUTBOUND) {
+                if (scratch.length < length) {
+                    scratch = new byte[Math.max(length, scratch.length * 2)];
+                }
+                records.get(scratch, 0, length);
+
+                if (speed > 0) {
+                    long delay = replayStart + (long) (offset / speed) - System.nanoTime();
+                    if (delay > 0) {
+                        TimeUnit.NANOSECONDS.sleep(delay);
+                    }
+                }
+                OutputStream out = socket.getOutputStream();
+                out.write(scratch, 0, length);
+            } else {
+                records.position(records.position() + length);
+
+                // wait for the peer to send the same number of bytes the captured socket read
+                InputStream in = socket.getInputStream();
+                int remaining = length;
+                while (remaining > 0) {
+                    int read = in.read(scratch, 0, Math.min(remaining, scratch.length));
+                    if (read == -1) {
+                        throw new EOFException("Socket closed with " + remaining + " bytes of the replay outstanding");
+                    }
+                    remaining -= read;
+                }
+            }
+            count++;
+        }
+
+        logger.debug("Replayed {} messages from {}", count, captureFile);
+        return count;
+    }
+}
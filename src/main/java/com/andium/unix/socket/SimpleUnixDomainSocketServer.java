@@ -49,8 +49,8 @@ public class SimpleUnixDomainSocketServer extends SimpleUnixDomainSocket{
      * which only accepts a single connection. If you wish to accept more than connection, then use the
      * SimpleUnixDomainSocketServer(String,int,int) constructor.
      *
-     * @param socketFile the name of the socket file
-     * @param socketType the socket type (use SOCK_DGRAM or SOCK_STREAM)
+     * @param socketFile the name of the socket file, or an abstract name (see abstractName(String))
+     * @param socketType the socket type (use SOCK_DGRAM, SOCK_STREAM or SOCK_SEQPACKET)
      * @throws IOException the io exception
      */
     public SimpleUnixDomainSocketServer(String socketFile, int socketType) throws IOException{
@@ -62,9 +62,11 @@ public class SimpleUnixDomainSocketServer extends SimpleUnixDomainSocket{
             throw new IOException("Unable to open domain socket");
         }
         logger.debug("Socket created with handle {}", nativeSocketFileHandle);
+        // a connection oriented socket has already accepted its single connection
+        register(isConnectionOriented(socketType) ? SimpleUnixDomainSocketRegistry.State.CONNECTED : SimpleUnixDomainSocketRegistry.State.BOUND);
 
         inputStream = new SimpleUnixDomainSocketInputStream();
-        if (socketType == SOCK_STREAM){
+        if (isConnectionOriented(socketType)){
             outputStream = new SimpleUnixDomainSocketOutputStream();
         }
     }
@@ -73,8 +75,8 @@ public class SimpleUnixDomainSocketServer extends SimpleUnixDomainSocket{
      * Instantiates a new Simple unix domain socket server. It will allow, at most, the number of connections
      * specified by the connections param.
      *
-     * @param socketfile  the name of the socket file
-     * @param socketType  the socket type (use SOCK_DGRAM or SOCK_STREAM)
+     * @param socketfile  the name of the socket file, or an abstract name (see abstractName(String))
+     * @param socketType  the socket type (use SOCK_DGRAM, SOCK_STREAM or SOCK_SEQPACKET)
      * @param connections the number of simultaneous connections pending to be accepted
      * @throws IOException the io exception
      */
@@ -86,20 +88,48 @@ public class SimpleUnixDomainSocketServer extends SimpleUnixDomainSocket{
             throw new IOException("Unable to open and listen on Unix domain socket");
         }
         logger.debug("listening to socket at {}", socketfile);
+        register(isConnectionOriented(socketType) ? SimpleUnixDomainSocketRegistry.State.LISTENING : SimpleUnixDomainSocketRegistry.State.BOUND);
     }
 
     /**
      * Blocking call to accept() on the socket. This will return a new SimpleUnixDomainSocket object for each
      * connection that the server accepts. Calls to accept() WILL block until the server either faults or accepts
-     * a new connection. It is suggested that you use a separate thread to call accept.
+     * a new connection, or the timeout set with setSoTimeout(int) expires. It is suggested that you use a separate
+     * thread to call accept.
      *
      * @return the simple unix domain socket
      * @throws IOException the io exception
      */
     public SimpleUnixDomainSocket accept() throws IOException{
         logger.debug("Calling accept()");
-        int newSocketFileHandle = -1;
-        if ((newSocketFileHandle = nativeAccept(nativeSocketFileHandle, socketType))==-1){
+        int newSocketFileHandle = nativeAccept(nativeSocketFileHandle, socketType);
+        reachabilityFence();
+        if (newSocketFileHandle == -1){
+            throw new IOException("Unable to accept on Unix domain socket");
+        }
+        logger.debug("Accept completed with code {}", newSocketFileHandle);
+        return new SimpleUnixDomainSocket(newSocketFileHandle, socketType);
+    }
+
+    /**
+     * Accepts a connection, waiting no later than the deadline for one to arrive.
+     *
+     * @param deadline the deadline, created with SimpleUnixDomainSocket#deadline(long, TimeUnit)
+     * @return the simple unix domain socket
+     * @throws SimpleUnixDomainSocketTimeoutException if no connection arrived before the deadline
+     * @throws IOException                            the io exception
+     */
+    public SimpleUnixDomainSocket accept(long deadline) throws IOException{
+        logger.debug("Calling accept() with a deadline");
+        int newSocketFileHandle;
+        while ((newSocketFileHandle = nativeTimedAccept(nativeSocketFileHandle, socketType, remainingMillis(deadline))) == NATIVE_AGAIN){
+            // another thread accepted the connection we were woken up for - wait out the rest of the deadline
+        }
+        reachabilityFence();
+        if (newSocketFileHandle == NATIVE_TIMEOUT){
+            throw new SimpleUnixDomainSocketTimeoutException("Accept timed out");
+        }
+        if (newSocketFileHandle == -1){
             throw new IOException("Unable to accept on Unix domain socket");
         }
         logger.debug("Accept completed with code {}", newSocketFileHandle);
@@ -109,7 +139,7 @@ public class SimpleUnixDomainSocketServer extends SimpleUnixDomainSocket{
     @Override
     public SimpleUnixDomainSocketOutputStream getOutputStream() {
         if (socketType == SOCK_DGRAM){
-            throw new UnsupportedOperationException("Datagram sockets are unidirectional. Use a SOCK_STREAM type and/or use accept() to get a new socket for each connection.");
+            throw new UnsupportedOperationException("Datagram sockets are unidirectional. Use a SOCK_STREAM or SOCK_SEQPACKET type and/or use accept() to get a new socket for each connection.");
         } else {
             return outputStream;
         }
@@ -0,0 +1,21 @@
+package com.andium.unix.socket;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * Thrown when a deadline passed to one of the deadline aware socket calls (read, write, accept or connect) expires
+ * before the call could complete. The socket itself is still usable - only the call has been abandoned.
+ */
+public class SimpleUnixDomainSocketTimeoutException extends SocketTimeoutException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Instantiates a new timeout exception.
+     *
+     * @param message the detail message
+     */
+    public SimpleUnixDomainSocketTimeoutException(String message) {
+        super(message);
+    }
+}
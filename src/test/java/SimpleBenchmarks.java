@@ -0,0 +1,299 @@
+import com.andium.unix.socket.SimpleUnixDomainSocket;
+import com.andium.unix.socket.SimpleUnixDomainSocketClient;
+import com.andium.unix.socket.SimpleUnixDomainSocketDelimitedReader;
+import com.andium.unix.socket.SimpleUnixDomainSocketServer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.concurrent.*;
+
+import static com.andium.unix.socket.SimpleUnixDomainSocket.SOCK_SEQPACKET;
+import static com.andium.unix.socket.SimpleUnixDomainSocket.SOCK_STREAM;
+
+/**
+ * Micro benchmarks for libSUDS. These aren't run as part of the test suite - run the main method directly with the
+ * native library on the classpath, e.g.
+ *
+ * java -cp build/classes/java/main:build/classes/java/test:slf4j-api.jar SimpleBenchmarks
+ *
+ * Each benchmark reports the average time per operation, and the number of bytes allocated on the heap per operation
+ * by the calling thread (via com.sun.management.ThreadMXBean).
+ */
+public class SimpleBenchmarks {
+
+    private static final String benchSock = "bench.sock";
+    private static final int warmup = 200000;
+    private static final int iterations = 1000000;
+
+    private static final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        allocationProfile();
+        delimitedRecords();
+        messageThroughput(64);
+        messageThroughput(1024);
+        connectAcceptRate();
+    }
+
+    /**
+     * Measures heap allocation of the array path - single byte read() / write(int), and small [off, off+len) reads
+     * and writes against a large (1MB) array. Each of these should allocate nothing per operation.
+     */
+    static void allocationProfile() throws Exception {
+        final byte[] large = new byte[1024 * 1024];
+        final int off = large.length / 2;
+        final int len = 10;
+
+        final SimpleUnixDomainSocketServer server = new SimpleUnixDomainSocketServer(benchSock, SOCK_STREAM, 1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<SimpleUnixDomainSocket> accepted = pool.submit(new Callable<SimpleUnixDomainSocket>() {
+                @Override
+                public SimpleUnixDomainSocket call() throws Exception {
+                    return server.accept();
+                }
+            });
+
+            try (SimpleUnixDomainSocketClient client = new SimpleUnixDomainSocketClient(benchSock, SOCK_STREAM);
+                 SimpleUnixDomainSocket peer = accepted.get(10, TimeUnit.SECONDS)) {
+                final OutputStream out = client.getOutputStream();
+                final InputStream in = peer.getInputStream();
+
+                report("write(int) + read()", new Op() {
+                    @Override
+                    public void run() throws IOException {
+                        out.write(42);
+                        if (in.read() != 42) {
+                            throw new IOException("Unexpected byte");
+                        }
+                    }
+                });
+
+                report("write(1MB array, " + len + " bytes) + read(1MB array, " + len + " bytes)", new Op() {
+                    @Override
+                    public void run() throws IOException {
+                        out.write(large, off, len);
+                        int remaining = len;
+                        while (remaining > 0) {
+                            remaining -= in.read(large, off + len - remaining, remaining);
+                        }
+                    }
+                });
+            }
+        } finally {
+            pool.shutdownNow();
+            server.close();
+            new File(benchSock).delete();
+        }
+    }
+
+    /**
+     * Compares reading newline delimited records with SimpleUnixDomainSocketDelimitedReader against the usual
+     * BufferedReader#readLine, which decodes every line into a String.
+     */
+    static void delimitedRecords() throws Exception {
+        final int records = 2000000;
+        final byte[] batch = new byte[64 * 1024];
+        final byte[] record = "{\"id\":12345,\"name\":\"libsuds\",\"tags\":[\"unix\",\"socket\"],\"ok\":true}\n".getBytes("UTF-8");
+        final int perBatch = batch.length / record.length;
+        for (int i = 0; i < perBatch; i++) {
+            System.arraycopy(record, 0, batch, i * record.length, record.length);
+        }
+
+        final SimpleUnixDomainSocketServer server = new SimpleUnixDomainSocketServer(benchSock, SOCK_STREAM, 1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            for (int run = 0; run < 4; run++) {
+                final boolean delimited = run % 2 == 1;
+                pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        try (SimpleUnixDomainSocket s = server.accept()) {
+                            OutputStream out = s.getOutputStream();
+                            for (int sent = 0; sent < records; sent += perBatch) {
+                                out.write(batch, 0, perBatch * record.length);
+                            }
+                        }
+                        return null;
+                    }
+                });
+
+                long threadId = Thread.currentThread().getId();
+                long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+                long start = System.nanoTime();
+                long count = 0;
+                try (SimpleUnixDomainSocketClient client = new SimpleUnixDomainSocketClient(benchSock, SOCK_STREAM)) {
+                    if (delimited) {
+                        SimpleUnixDomainSocketDelimitedReader reader = new SimpleUnixDomainSocketDelimitedReader(client, (byte) '\n');
+                        while (reader.next() != -1) {
+                            count++;
+                        }
+                    } else {
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), "UTF-8"), 64 * 1024);
+                        while (reader.readLine() != null) {
+                            count++;
+                        }
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+                long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+                // the first run of each is a warm up
+                if (run >= 2) {
+                    System.out.printf("%-60s %8.1f ns/op %8.3f bytes/op%n",
+                            delimited ? "DelimitedReader.next()" : "BufferedReader.readLine()",
+                            (double) elapsed / count, (double) allocated / count);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            server.close();
+            new File(benchSock).delete();
+        }
+    }
+
+    /**
+     * Compares message throughput of SOCK_SEQPACKET, which preserves message boundaries, against the usual way of
+     * sending messages over a SOCK_STREAM - a 4 byte length prefix, which costs the receiver an extra read per message.
+     */
+    static void messageThroughput(final int size) throws Exception {
+        final int messages = 500000;
+        for (int run = 0; run < 4; run++) {
+            final boolean seqpacket = run % 2 == 1;
+            final int socketType = seqpacket ? SOCK_SEQPACKET : SOCK_STREAM;
+
+            final SimpleUnixDomainSocketServer server = new SimpleUnixDomainSocketServer(benchSock, socketType, 1);
+            ExecutorService pool = Executors.newSingleThreadExecutor();
+            try {
+                pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        byte[] frame = new byte[4 + size];
+                        ByteBuffer.wrap(frame).putInt(size);
+                        try (SimpleUnixDomainSocket s = server.accept()) {
+                            OutputStream out = s.getOutputStream();
+                            for (int i = 0; i < messages; i++) {
+                                if (seqpacket) {
+                                    s.send(frame, 4, size);
+                                } else {
+                                    out.write(frame, 0, frame.length);
+                                }
+                            }
+                        }
+                        return null;
+                    }
+                });
+
+                byte[] buffer = new byte[4 + size];
+                long start = System.nanoTime();
+                try (SimpleUnixDomainSocketClient client = new SimpleUnixDomainSocketClient(benchSock, socketType)) {
+                    InputStream in = client.getInputStream();
+                    for (int i = 0; i < messages; i++) {
+                        if (seqpacket) {
+                            client.receive(buffer, 0, buffer.length);
+                        } else {
+                            readFully(in, buffer, 4);
+                            readFully(in, buffer, ByteBuffer.wrap(buffer).getInt(0));
+                        }
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+
+                // the first run of each is a warm up
+                if (run >= 2) {
+                    System.out.printf("%-60s %8.1f ns/op %8.0f msgs/s%n",
+                            (seqpacket ? "SOCK_SEQPACKET receive(), " : "SOCK_STREAM length prefixed, ") + size + " bytes",
+                            (double) elapsed / messages, messages / (elapsed / 1e9));
+                }
+            } finally {
+                pool.shutdownNow();
+                server.close();
+                new File(benchSock).delete();
+            }
+        }
+    }
+
+    /**
+     * Compares the rate at which connections can be made and accepted on an abstract namespace socket against a
+     * socket file - i.e. a reconnect storm. Each client connects, the server accepts, and both sides close.
+     */
+    static void connectAcceptRate() throws Exception {
+        final int connections = 50000;
+        for (int run = 0; run < 4; run++) {
+            final boolean abstractName = run % 2 == 1;
+            final String socketFile = abstractName ? SimpleUnixDomainSocket.abstractName("libsuds-bench") : benchSock;
+
+            final SimpleUnixDomainSocketServer server = new SimpleUnixDomainSocketServer(socketFile, SOCK_STREAM, 128);
+            ExecutorService pool = Executors.newSingleThreadExecutor();
+            try {
+                long start = System.nanoTime();
+                Future<Void> accepted = pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = 0; i < connections; i++) {
+                            server.accept().close();
+                        }
+                        return null;
+                    }
+                });
+
+                for (int i = 0; i < connections; i++) {
+                    new SimpleUnixDomainSocketClient(socketFile, SOCK_STREAM).close();
+                }
+                accepted.get();
+                long elapsed = System.nanoTime() - start;
+
+                // the first run of each is a warm up
+                if (run >= 2) {
+                    System.out.printf("%-60s %8.1f ns/op %8.0f conns/s%n",
+                            abstractName ? "connect + accept, abstract name" : "connect + accept, socket file",
+                            (double) elapsed / connections, connections / (elapsed / 1e9));
+                }
+            } finally {
+                pool.shutdownNow();
+                server.close();
+                server.unlink();
+            }
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] b, int len) throws IOException {
+        int read = 0;
+        while (read < len) {
+            int count = in.read(b, read, len - read);
+            if (count == -1) {
+                throw new IOException("Unexpected end of stream");
+            }
+            read += count;
+        }
+    }
+
+    private interface Op {
+        void run() throws IOException;
+    }
+
+    private static void report(String name, Op op) throws IOException {
+        for (int i = 0; i < warmup; i++) {
+            op.run();
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            op.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.printf("%-60s %8.1f ns/op %8.3f bytes/op%n", name,
+                (double) elapsed / iterations, (double) allocated / iterations);
+    }
+}
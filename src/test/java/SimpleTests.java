@@ -1,16 +1,24 @@
 import com.andium.unix.socket.SimpleUnixDomainSocket;
+import com.andium.unix.socket.SimpleUnixDomainSocketCapture;
 import com.andium.unix.socket.SimpleUnixDomainSocketClient;
+import com.andium.unix.socket.SimpleUnixDomainSocketDelimitedReader;
+import com.andium.unix.socket.SimpleUnixDomainSocketRegistry;
+import com.andium.unix.socket.SimpleUnixDomainSocketReplayer;
 import com.andium.unix.socket.SimpleUnixDomainSocketServer;
+import com.andium.unix.socket.SimpleUnixDomainSocketTimeoutException;
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.*;
 
+import static com.andium.unix.socket.SimpleUnixDomainSocket.SOCK_SEQPACKET;
 import static com.andium.unix.socket.SimpleUnixDomainSocket.SOCK_STREAM;
 
 /**
@@ -229,6 +237,291 @@ public class SimpleTests {
         }
     }
 
+    @Test
+    public void testAcceptTimeout(){
+        try {
+            server.setSoTimeout(200);
+        } catch (Exception e){
+            e.printStackTrace();
+            Assert.fail("Failed to set timeout on server socket");
+        }
+
+        long start = System.nanoTime();
+        try (SimpleUnixDomainSocket s = server.accept()){
+            Assert.fail("Accept should have timed out");
+        } catch (Exception e){
+            // expected
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertTrue("Accept gave up after " + elapsed + "ms", elapsed >= 150 && elapsed < 5000);
+    }
+
+    @Test
+    public void testCaptureAndReplay(){
+        String captureFile = "test.capture";
+        try {
+            ExecutorService pool = Executors.newSingleThreadExecutor();
+            Future<List<String>> received = pool.submit(new Callable<List<String>>() {
+                @Override
+                public List<String> call() throws Exception {
+                    List<String> lines = new ArrayList<>();
+                    for (int i = 0; i < 4; i++){
+                        try (SimpleUnixDomainSocket s = server.accept();
+                             BufferedReader reader = new BufferedReader(new InputStreamReader(s.getInputStream()))){
+                            lines.add(reader.readLine());
+                        }
+                    }
+                    return lines;
+                }
+            });
+
+            try (SimpleUnixDomainSocketCapture capture = new SimpleUnixDomainSocketCapture(captureFile, 4096)){
+                try (SimpleUnixDomainSocketClient c = createClient();
+                     BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(c.getOutputStream()))){
+                    c.setCapture(capture);
+                    writer.write(message);
+                    writer.newLine();
+                    writer.flush();
+                }
+                Assert.assertEquals(1, capture.getRecordCount());
+
+                // a second socket sharing the capture is recorded as its own connection
+                try (SimpleUnixDomainSocketClient c = createClient();
+                     BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(c.getOutputStream()))){
+                    c.setCapture(capture);
+                    writer.write("second");
+                    writer.newLine();
+                    writer.flush();
+                }
+                Assert.assertEquals(2, capture.getConnectionCount());
+            }
+
+            SimpleUnixDomainSocketReplayer replayer = new SimpleUnixDomainSocketReplayer(captureFile);
+            int[] connections = replayer.getConnections();
+            Assert.assertEquals(2, connections.length);
+            try (SimpleUnixDomainSocketClient c = createClient()){
+                replayer.replay(c, false, 0);
+                Assert.fail("Replaying a shared capture should require a connection");
+            } catch (IllegalStateException e){
+                // expected
+            }
+            try (SimpleUnixDomainSocketClient c = createClient()){
+                Assert.assertEquals(1, replayer.replay(c, connections[1], false, 0));
+            }
+
+            List<String> lines = received.get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(message, lines.get(0));
+            Assert.assertEquals("second", lines.get(1));
+            Assert.assertEquals(null, lines.get(2)); // the rejected replay sent nothing
+            Assert.assertEquals("second", lines.get(3));
+        } catch (Exception e){
+            e.printStackTrace();
+            Assert.fail();
+        } finally {
+            new File(captureFile).delete();
+        }
+    }
+
+    @Test
+    public void testDeadlines(){
+        try {
+            try {
+                server.accept(SimpleUnixDomainSocket.deadline(100, TimeUnit.MILLISECONDS));
+                Assert.fail("Accept should have timed out");
+            } catch (SimpleUnixDomainSocketTimeoutException e){
+                // expected
+            }
+
+            try (SimpleUnixDomainSocketClient c = new SimpleUnixDomainSocketClient(testSock, SOCK_STREAM,
+                    SimpleUnixDomainSocket.deadline(1, TimeUnit.SECONDS));
+                 SimpleUnixDomainSocket s = server.accept(SimpleUnixDomainSocket.deadline(1, TimeUnit.SECONDS))){
+                byte[] buffer = new byte[message.length()];
+                try {
+                    c.read(buffer, 0, buffer.length, SimpleUnixDomainSocket.deadline(100, TimeUnit.MILLISECONDS));
+                    Assert.fail("Read should have timed out");
+                } catch (SimpleUnixDomainSocketTimeoutException e){
+                    // expected
+                }
+
+                s.write(message.getBytes(), 0, message.length(), SimpleUnixDomainSocket.deadline(1, TimeUnit.SECONDS));
+                int count = c.read(buffer, 0, buffer.length, SimpleUnixDomainSocket.deadline(1, TimeUnit.SECONDS));
+                Assert.assertEquals(message, new String(buffer, 0, count));
+            }
+        } catch (Exception e){
+            e.printStackTrace();
+            Assert.fail();
+        }
+    }
+
+    @Test
+    public void testDelimitedReader(){
+        final String records = "a\n\n" + message + "\n0123456789012345678901234567890123456789\ntail";
+        try {
+            ExecutorService pool = Executors.newSingleThreadExecutor();
+            Future<?> written = pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try (SimpleUnixDomainSocket s = server.accept();
+                         BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(s.getOutputStream()))){
+                        writer.write(records);
+                        writer.flush();
+                    } catch (Exception e){
+                        e.printStackTrace();
+                        Assert.fail();
+                    }
+                }
+            });
+
+            List<String> received = new ArrayList<>();
+            try (SimpleUnixDomainSocketClient c = createClient()){
+                // a small buffer, so records span refills and the buffer has to grow
+                SimpleUnixDomainSocketDelimitedReader reader = new SimpleUnixDomainSocketDelimitedReader(c, (byte) '\n', 16, 64);
+                int length;
+                while ((length = reader.next()) != -1){
+                    received.add(new String(reader.array(), reader.offset(), length));
+                }
+            }
+
+            // surface any failure in the writer, rather than just a mismatch in the records
+            written.get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(Arrays.asList(records.split("\n")), received);
+        } catch (Exception e){
+            e.printStackTrace();
+            Assert.fail();
+        }
+    }
+
+    @Test
+    public void testRegistry(){
+        try {
+            Assert.assertTrue(SimpleUnixDomainSocketRegistry.getOpenCount(SimpleUnixDomainSocketRegistry.State.LISTENING) >= 1);
+
+            SimpleUnixDomainSocketClient c = createClient();
+            SimpleUnixDomainSocket s = server.accept(SimpleUnixDomainSocket.deadline(1, TimeUnit.SECONDS));
+            Assert.assertTrue(SimpleUnixDomainSocketRegistry.getOpenCount(SimpleUnixDomainSocketRegistry.State.CONNECTED) >= 2);
+            c.close();
+            c.close(); // closing twice is harmless
+
+            // drop the accepted socket without closing it - its file handle should be reclaimed
+            long reclaimed = SimpleUnixDomainSocketRegistry.getReclaimedCount();
+            s = null;
+            for (int i = 0; i < 50 && SimpleUnixDomainSocketRegistry.getReclaimedCount() == reclaimed; i++){
+                System.gc();
+                Thread.sleep(100);
+            }
+            Assert.assertTrue(SimpleUnixDomainSocketRegistry.getReclaimedCount() > reclaimed);
+        } catch (Exception e){
+            e.printStackTrace();
+            Assert.fail();
+        }
+    }
+
+    @Test
+    public void testSeqpacketMessages(){
+        // Unix domain seqpacket sockets are Linux only
+        Assume.assumeTrue(isLinux());
+        String seqSock = "seq.sock";
+        try (SimpleUnixDomainSocketServer seqServer = new SimpleUnixDomainSocketServer(seqSock, SOCK_SEQPACKET, conns);
+             SimpleUnixDomainSocketClient c = new SimpleUnixDomainSocketClient(seqSock, SOCK_SEQPACKET);
+             SimpleUnixDomainSocket s = seqServer.accept()){
+            byte[] first = message.getBytes();
+            byte[] second = "a second, longer message".getBytes();
+            c.send(first, 0, first.length);
+            c.send(second, 0, second.length);
+
+            // each receive returns exactly one message, however big the buffer
+            byte[] buffer = new byte[1024];
+            Assert.assertEquals(message, new String(buffer, 0, s.receive(buffer, 0, buffer.length)));
+            Assert.assertEquals("a second, longer message", new String(buffer, 0, s.receive(buffer, 0, buffer.length)));
+
+            // and replies go the other way
+            s.send(first, 0, first.length);
+            Assert.assertEquals(message, new String(buffer, 0, c.receive(buffer, 0, buffer.length)));
+
+            c.send(second, 0, second.length);
+            try {
+                s.receive(buffer, 0, 4);
+                Assert.fail("Receive should have reported the truncated message");
+            } catch (IOException e){
+                // expected
+            }
+        } catch (Exception e){
+            e.printStackTrace();
+            Assert.fail();
+        } finally {
+            new File(seqSock).delete();
+        }
+    }
+
+    @Test
+    public void testSeqpacketInputStream(){
+        Assume.assumeTrue(isLinux());
+        String seqSock = "seq.sock";
+        try (SimpleUnixDomainSocketServer seqServer = new SimpleUnixDomainSocketServer(seqSock, SOCK_SEQPACKET, conns);
+             SimpleUnixDomainSocketClient c = new SimpleUnixDomainSocketClient(seqSock, SOCK_SEQPACKET);
+             SimpleUnixDomainSocket s = seqServer.accept()){
+            InputStream in = s.getInputStream();
+            c.send("hello".getBytes(), 0, 5);
+            c.send("world".getBytes(), 0, 5);
+
+            // each stream read returns one whole message
+            byte[] buffer = new byte[1024];
+            Assert.assertEquals("hello", new String(buffer, 0, in.read(buffer, 0, buffer.length)));
+            Assert.assertEquals("world", new String(buffer, 0, in.read(buffer, 0, buffer.length)));
+
+            // a message which doesn't fit is reported, rather than the rest of it being silently discarded
+            c.send("hello".getBytes(), 0, 5);
+            try {
+                in.read();
+                Assert.fail("Read should have reported the truncated message");
+            } catch (IOException e){
+                // expected
+            }
+            c.send("world".getBytes(), 0, 5);
+            try {
+                s.read(buffer, 0, 2, SimpleUnixDomainSocket.deadline(1, TimeUnit.SECONDS));
+                Assert.fail("Read should have reported the truncated message");
+            } catch (IOException e){
+                // expected
+            }
+
+            // single byte messages still read one byte at a time
+            c.send("!".getBytes(), 0, 1);
+            Assert.assertEquals('!', in.read());
+        } catch (Exception e){
+            e.printStackTrace();
+            Assert.fail();
+        } finally {
+            new File(seqSock).delete();
+        }
+    }
+
+    @Test
+    public void testAbstractNamespace(){
+        // abstract namespace sockets are Linux only
+        Assume.assumeTrue(isLinux());
+        String name = "libsuds-test";
+        try (SimpleUnixDomainSocketServer abstractServer = new SimpleUnixDomainSocketServer(SimpleUnixDomainSocket.abstractName(name), SOCK_STREAM, conns);
+             SimpleUnixDomainSocketClient c = new SimpleUnixDomainSocketClient(SimpleUnixDomainSocket.abstractName(name), SOCK_STREAM);
+             SimpleUnixDomainSocket s = abstractServer.accept()){
+            byte[] buffer = new byte[message.length()];
+            s.write(message.getBytes(), 0, message.length(), SimpleUnixDomainSocket.deadline(1, TimeUnit.SECONDS));
+            int count = c.read(buffer, 0, buffer.length, SimpleUnixDomainSocket.deadline(1, TimeUnit.SECONDS));
+            Assert.assertEquals(message, new String(buffer, 0, count));
+
+            // no socket file is created
+            Assert.assertFalse(new File(name).exists());
+            abstractServer.unlink();
+        } catch (Exception e){
+            e.printStackTrace();
+            Assert.fail();
+        }
+    }
+
+    private static boolean isLinux(){
+        return System.getProperty("os.name").toLowerCase().equals("linux");
+    }
+
     SimpleUnixDomainSocketClient createClient() throws IOException{
         return new SimpleUnixDomainSocketClient(testSock, SOCK_STREAM);
     }